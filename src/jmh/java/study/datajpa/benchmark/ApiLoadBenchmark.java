@@ -0,0 +1,122 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST API 부하 테스트
+ */
+//실제 HTTP 로 API 를 호출해서 처리량(requests/sec, Throughput)과 응답 시간 분포(SampleTime 의 p0.99)를 함께 기록한다.
+//memberNotModified 는 If-None-Match 가 맞는 경우(304, DB 조회 없음), member 는 매번 200 으로 본문까지 받는 경우
+//stream 은 전체 회원 NDJSON 한번을 끝까지 읽는 시간, 나머지는 단위가 초이므로 SampleTime 의 p0.99 도 초 단위로 나온다.
+//./gradlew jmh -PjmhArgs='ApiLoadBenchmark'
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class ApiLoadBenchmark {
+    private static final int TEAMS = 10;
+
+    @Param({"10000"})
+    public int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private long[] ids;
+    private String[] etags;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:api;DB_CLOSE_DELAY=-1",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "logging.level.org.hibernate.type=warn")
+                .run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Team("team" + i));
+        }
+        context.getBean(TeamRepository.class).saveAllBatched(teams);
+        List<Member> members = new ArrayList<>(datasetSize);
+        for (int i = 0; i < datasetSize; i++) {
+            members.add(Member.createMember("member" + i, i % 100, teams.get(i % TEAMS)));
+        }
+        context.getBean(MemberRepository.class).saveAllBatched(members);
+        ids = members.stream().mapToLong(Member::getId).toArray();
+
+        //304 측정용 ETag 를 미리 받아둔다.
+        etags = new String[datasetSize];
+        for (int i = 0; i < datasetSize; i++) {
+            etags[i] = send(memberRequest(ids[i]).build()).headers().firstValue("ETag").orElse(null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int member() throws Exception {
+        int i = ThreadLocalRandom.current().nextInt(datasetSize);
+        return send(memberRequest(ids[i]).build()).statusCode();
+    }
+
+    @Benchmark
+    public int memberNotModified() throws Exception {
+        int i = ThreadLocalRandom.current().nextInt(datasetSize);
+        return send(memberRequest(ids[i]).header("If-None-Match", etags[i]).build()).statusCode();
+    }
+
+    @Benchmark
+    public int page() throws Exception {
+        int page = ThreadLocalRandom.current().nextInt(datasetSize / 20);
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/members?size=20&page=" + page)).build()).statusCode();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public long stream() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/members/stream")).build();
+        try (InputStream body = client.send(request, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private HttpRequest.Builder memberRequest(long id) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/members/" + id));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,141 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberReadModel;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 리포지토리 주요 메소드 벤치마크
+ */
+//임베디드 H2(mem) 에 datasetSize 만큼 회원을 넣고 측정한다. 회원 이름은 member0 ~ member99 를 반복하므로
+//findListByUsername 한번에 datasetSize / 100 개가 조회된다.
+//쿼리 캐시를 끄고, 측정과 상관없는 백그라운드 작업(outbox 릴레이, 이름 인덱스 적재, index advisor)도 끈다.
+//결과는 build/reports/jmh/results.json 으로 저장되므로 커밋 간 결과를 비교할 수 있다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+    private static final int USERNAMES = 100;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "10000"})
+    public int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private MemberRepository memberRepository;
+    private TransactionTemplate transactionTemplate;
+    private PageRequest deepPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "logging.level.org.hibernate.type=warn",
+                        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                        "datajpa.outbox.relay-enabled=false",
+                        "datajpa.search.username-index.enabled=false",
+                        "datajpa.index-advisor.enabled=false")
+                .run();
+        memberRepository = context.getBean(MemberRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            teams.add(new Team("team" + i));
+        }
+        context.getBean(TeamRepository.class).saveAllBatched(teams);
+
+        List<Member> members = new ArrayList<>(datasetSize);
+        for (int i = 0; i < datasetSize; i++) {
+            members.add(Member.createMember("member" + (i % USERNAMES), i % 100, teams.get(i % teams.size())));
+        }
+        memberRepository.saveAllBatched(members);
+
+        int perUsername = datasetSize / USERNAMES;
+        deepPage = PageRequest.of(Math.max(0, perUsername / PAGE_SIZE - 1), PAGE_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //findByUsername 은 쿼리 캐시 대상이라 캐시가 켜져 있으면 두번째 호출부터 select 를 하지 않는다.
+    @Benchmark
+    public List<Member> findListByUsername() {
+        return memberRepository.findListByUsername("member42");
+    }
+
+    //같은 조건을 JDBC 빠른 경로로 조회, findListByUsername 과 비교해 엔티티 hydrate 비용을 확인한다.
+    @Benchmark
+    public List<MemberReadModel> findReadModelsByUsername() {
+        return memberRepository.findReadModelsByUsername("member42");
+    }
+
+    @Benchmark
+    public Page<Member> findPageByUsername() {
+        return memberRepository.findPageByUsername("member42", deepPage);
+    }
+
+    @Benchmark
+    public Slice<Member> findSliceByUsername() {
+        return memberRepository.findSliceByUsername("member42", deepPage);
+    }
+
+    @Benchmark
+    public List<Member> findAllWithEntityGraph() {
+        return memberRepository.findAll();
+    }
+
+    @Benchmark
+    public List<MemberDto> findMemberDto() {
+        return memberRepository.findMemberDto();
+    }
+
+    //저장, 벌크 수정은 롤백해서 데이터셋 크기를 유지한다.
+    @Benchmark
+    public List<Member> saveAll() {
+        return transactionTemplate.execute(status -> {
+            List<Member> members = new ArrayList<>(100);
+            for (int i = 0; i < 100; i++) {
+                members.add(new Member("saved" + i, i));
+            }
+            List<Member> saved = memberRepository.saveAll(members);
+            memberRepository.flush();
+            status.setRollbackOnly();
+            return saved;
+        });
+    }
+
+    @Benchmark
+    public Integer bulkAgePlus() {
+        return transactionTemplate.execute(status -> {
+            int updated = memberRepository.bulkAgePlus(50);
+            status.setRollbackOnly();
+            return updated;
+        });
+    }
+}
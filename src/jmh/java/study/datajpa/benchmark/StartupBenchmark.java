@@ -0,0 +1,75 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.domain.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 기동 시간 벤치마크
+ */
+//bootstrap-mode, warm up 조합 별로 SpringApplication.run 시작부터 첫 HTTP 요청이 성공할 때 까지의 시간(time-to-first-request)을 잰다.
+//첫 요청은 /actuator/health 로 DB 커넥션 확인까지 포함한다. timeToFirstQuery 는 기동 후 첫 findByUsername 까지의 시간으로
+//lazy 모드에서 리포지토리 생성, 쿼리 파싱 비용이 첫 조회로 넘어가는 것을 확인한다.
+//JVM 마다 한번만 기동해야 클래스 로딩까지 포함한 cold start 가 측정되므로 fork 마다 한번씩 실행한다.
+//./gradlew jmh -PjmhArgs='StartupBenchmark'
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+    @Param({"default", "deferred", "lazy"})
+    public String bootstrapMode;
+
+    @Param({"false", "true"})
+    public boolean warmup;
+
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException {
+        start();
+        String port = context.getEnvironment().getProperty("local.server.port");
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/actuator/health").openConnection();
+        try (InputStream body = connection.getInputStream()) {
+            body.readAllBytes();
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Benchmark
+    public List<Member> timeToFirstQuery() {
+        start();
+        return context.getBean(MemberRepository.class).findByUsername("member42");
+    }
+
+    private void start() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1",
+                        "spring.data.jpa.repositories.bootstrap-mode=" + bootstrapMode,
+                        "datajpa.startup.warmup=" + warmup,
+                        "logging.level.org.hibernate.SQL=warn",
+                        "logging.level.org.hibernate.type=warn")
+                .run();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (context != null) context.close();
+    }
+}
@@ -0,0 +1,108 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.domain.Member;
+import study.datajpa.dto.MemberSummary;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.search.UsernameIndex;
+import study.datajpa.search.UsernameIndexLoader;
+import study.datajpa.search.UsernameMatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 이름 검색 벤치마크, 메모리 인덱스(UsernameIndex) vs SQL like
+ */
+//임베디드 H2(mem) 에 음절을 이어 붙인 임의 이름(고정 seed)으로 datasetSize 만큼 회원을 넣는다.
+//index* 는 UsernameIndex, sql* 는 리포지토리의 like 조회로 같은 검색을 한다. 결과는 모두 10개로 제한한다.
+//sqlPrefix 는 username 인덱스를 타는 'x%', sqlContains 는 인덱스를 쓰지 못하고 테이블을 읽어 나가는 '%x%'. 오타 허용 검색은 SQL 로 대응하는 것이 없다.
+//./gradlew jmh -PjmhArgs='UsernameSearchBenchmark'
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsernameSearchBenchmark {
+    private static final String[] SYLLABLES = {"ka", "ri", "mo", "su", "jin", "ho", "yeon", "min", "seo", "ah", "do", "hyun", "ji", "woo", "na", "eun"};
+    private static final int LIMIT = 10;
+
+    @Param({"10000", "100000"})
+    public int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private MemberRepository memberRepository;
+    private UsernameIndex usernameIndex;
+    private String prefix;
+    private String infix;
+    private String typo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:username-search;DB_CLOSE_DELAY=-1",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "logging.level.org.hibernate.type=warn")
+                .run();
+        memberRepository = context.getBean(MemberRepository.class);
+        usernameIndex = context.getBean(UsernameIndex.class);
+        context.getBean(UsernameIndexLoader.class).awaitReady();
+
+        Random random = new Random(42);
+        List<Member> members = new ArrayList<>(datasetSize);
+        for (int i = 0; i < datasetSize; i++) {
+            StringBuilder username = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int j = 0; j < syllables; j++) {
+                username.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            members.add(new Member(username.append(i % 100).toString(), random.nextInt(80)));
+        }
+        memberRepository.saveAllBatched(members);      //커밋 후 이벤트로 인덱스에 반영된다.
+
+        String sample = members.get(datasetSize / 2).getUsername();
+        prefix = sample.substring(0, 4);
+        infix = sample.substring(2, 6);
+        typo = sample.charAt(1) + "" + sample.charAt(0) + sample.substring(2);     //앞 두 글자 바꿈
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UsernameMatch> indexPrefix() {
+        return usernameIndex.findByPrefix(prefix, 0, Integer.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<UsernameMatch> indexPrefixWithAge() {
+        return usernameIndex.findByPrefix(prefix, 60, Integer.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<UsernameMatch> indexSimilar() {
+        return usernameIndex.findSimilar(typo, 2, 0, Integer.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<MemberSummary> sqlPrefix() {
+        return memberRepository.findSummaryByUsernameStartingWith(prefix, PageRequest.of(0, LIMIT));
+    }
+
+    @Benchmark
+    public List<MemberSummary> sqlContains() {
+        return memberRepository.findSummaryByUsernameContaining(infix, PageRequest.of(0, LIMIT));
+    }
+}
@@ -5,9 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
-
-import java.util.Optional;
-import java.util.UUID;
+import study.datajpa.audit.AuditorHolder;
 
 @EnableJpaAuditing
 @SpringBootApplication
@@ -19,12 +17,8 @@ public class DataJpaApplication {
 
 	@Bean
 	public AuditorAware<String> auditorProvider(){
-		return new AuditorAware<String>() {
-			@Override
-			public Optional<String> getCurrentAuditor() {
-				//실제 사용 할 때는 스프링 시큐리티의 세션정보에서 사용자 ID 를 return
-				return Optional.of(UUID.randomUUID().toString());
-			}
-		};
+		//실제 사용 할 때는 스프링 시큐리티의 세션정보에서 사용자 ID 를 return
+		//사용자 ID 는 AuditorFilter 가 요청마다 한번 결정해 두고, 엔티티 저장 시에는 캐시된 값을 그대로 돌려준다.
+		return AuditorHolder::current;
 	}
 }
@@ -0,0 +1,164 @@
+package study.datajpa.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.datajpa.domain.BaseTimeEntity;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 회원, 팀 응답의 ETag 캐시
+ */
+//ETag 는 lastModifiedDate 로 만들고 id 별로 보관해서 If-None-Match 가 같으면 DB 조회 없이 304 를 응답한다.
+//엔티티가 수정, 삭제되면 커밋 후(post commit) 이벤트에서 지운다. 회원 응답은 팀 이름을 포함하므로 팀이 바뀌면 회원 ETag 도 모두 지운다.
+//JPQL 벌크 연산은 엔티티 이벤트가 없는 대신 하이버네이트가 2차 캐시 region 을 비우므로, 2차 캐시에 엔티티가 없으면 캐시된 ETag 를 쓰지 않는다.
+//조회 중에 변경이 커밋되면 이전 값으로 만든 ETag 를 저장하지 않도록 조회 시작 시점의 generation 이 그대로일 때만 저장한다.
+@Component
+public class EntityTagCache implements Integrator, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    private final Cache<Long, Entry> memberTags;
+    private final Cache<Long, Entry> teamTags;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile SessionFactoryImplementor sessionFactory;
+
+    public EntityTagCache(@Value("${datajpa.api.etag-cache-size:100000}") long maximumSize,
+                          @Value("${datajpa.api.etag-ttl:10m}") Duration ttl) {
+        this.memberTags = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build();
+        this.teamTags = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build();
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.sessionFactory = sessionFactory;
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    //DB 에서 읽기 전에 호출, put 할 때 넘긴다.
+    public long generation() {
+        return generation.get();
+    }
+
+    //캐시된 ETag, 없거나 사용할 수 없으면 null
+    public String memberTag(Long id) {
+        Entry entry = memberTags.getIfPresent(id);
+        if (entry == null || !cached(Member.class, id) || (entry.teamId != null && !cached(Team.class, entry.teamId))) return null;
+        return entry.tag;
+    }
+
+    public String putMember(Member member, long observedGeneration) {
+        Team team = member.getTeam();
+        String tag = team == null
+                ? tag(member.getId(), member.getLastModifiedDate())
+                : tag(member.getId(), member.getLastModifiedDate(), team.getLastModifiedDate());
+        if (generation.get() == observedGeneration) {
+            memberTags.put(member.getId(), new Entry(tag, team == null ? null : team.getId()));
+        }
+        return tag;
+    }
+
+    public String teamTag(Long id) {
+        Entry entry = teamTags.getIfPresent(id);
+        return entry == null || !cached(Team.class, id) ? null : entry.tag;
+    }
+
+    public String putTeam(Team team, long observedGeneration) {
+        String tag = tag(team.getId(), team.getLastModifiedDate());
+        if (generation.get() == observedGeneration) {
+            teamTags.put(team.getId(), new Entry(tag, null));
+        }
+        return tag;
+    }
+
+    //If-None-Match 는 여러 ETag 를 쉼표로 나열하거나 * 일 수 있다. 약한 비교(W/ 무시)를 한다.
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) return true;
+            if (value.startsWith("W/")) value = value.substring(2);
+            if (value.equals(tag)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        evict(event.getEntity(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        evict(event.getEntity(), event.getId());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Member.class || type == Team.class;
+    }
+
+    private void evict(Object entity, Object id) {
+        generation.incrementAndGet();
+        if (entity instanceof Member) {
+            memberTags.invalidate(id);
+        } else if (entity instanceof Team) {
+            teamTags.invalidate(id);
+            memberTags.invalidateAll();
+        }
+    }
+
+    private boolean cached(Class<?> type, Long id) {
+        SessionFactoryImplementor factory = sessionFactory;
+        return factory != null && factory.getCache().containsEntity(type, id);
+    }
+
+    //"id-수정시각(마이크로초, 16진수)[-팀 수정시각]"
+    private static String tag(Long id, LocalDateTime... modified) {
+        StringBuilder sb = new StringBuilder("\"").append(id);
+        for (LocalDateTime time : modified) {
+            sb.append('-').append(time == null ? "0" : Long.toHexString(epochMicros(time)));
+        }
+        return sb.append('"').toString();
+    }
+
+    private static long epochMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static final class Entry {
+        private final String tag;
+        private final Long teamId;
+
+        Entry(String tag, Long teamId) {
+            this.tag = tag;
+            this.teamId = teamId;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package study.datajpa.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.datajpa.domain.Member;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.search.UsernameIndex;
+import study.datajpa.search.UsernameMatch;
+
+import java.util.List;
+
+/**
+ * 회원 조회 API
+ */
+//엔티티를 그대로 직렬화하지 않고 MemberDto 로 응답한다. (JSON 변환 중 team 지연로딩이 일어나지 않는다)
+@RestController
+@RequestMapping("/api/members")
+@RequiredArgsConstructor
+public class MemberApiController {
+    public static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_CHUNK_SIZE = 1000;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    private final MemberRepository memberRepository;
+    private final EntityTagCache entityTagCache;
+    private final UsernameIndex usernameIndex;
+    private final ObjectMapper objectMapper;
+
+    //페이지 크기는 spring.data.web.pageable.max-page-size 로 제한
+    @GetMapping
+    public Page<MemberDto> members(@PageableDefault(size = 20) Pageable pageable) {
+        return memberRepository.findMemberDtoPage(pageable);
+    }
+
+    //이름 자동완성(접두어), fuzzy=true 면 오타 허용 검색, DB 를 조회하지 않고 UsernameIndex 에서 찾는다.
+    @GetMapping("/search")
+    public List<UsernameMatch> search(@RequestParam String q,
+                                      @RequestParam(defaultValue = "false") boolean fuzzy,
+                                      @RequestParam(defaultValue = "0") int minAge,
+                                      @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int maxAge,
+                                      @RequestParam(defaultValue = "10") int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        return fuzzy
+                ? usernameIndex.findSimilar(q, 2, minAge, maxAge, size)
+                : usernameIndex.findByPrefix(q, minAge, maxAge, size);
+    }
+
+    //If-None-Match 가 캐시된 ETag 와 같으면 DB 를 조회하지 않고 304
+    @GetMapping("/{id}")
+    public ResponseEntity<MemberDto> member(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String cached = entityTagCache.memberTag(id);
+        if (EntityTagCache.matches(ifNoneMatch, cached)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cached).build();
+        }
+        long generation = entityTagCache.generation();
+        Member member = memberRepository.findWithTeamById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "member " + id));
+        String tag = entityTagCache.putMember(member, generation);
+        if (EntityTagCache.matches(ifNoneMatch, tag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).build();
+        }
+        MemberDto body = new MemberDto(member.getId(), member.getUsername(), member.getTeam() == null ? null : member.getTeam().getName());
+        return ResponseEntity.ok().eTag(tag).body(body);
+    }
+
+    /**
+     * 전체 회원을 NDJSON(한 줄에 JSON 하나) 으로 스트리밍
+     */
+    //id keyset 으로 chunkSize 개씩 조회해서 바로 쓰고, 다음 chunk 는 앞의 chunk 를 다 쓴 뒤에 조회한다.
+    //클라이언트가 느리면 소켓 버퍼가 차서 write 가 블로킹되므로 조회도 그만큼 늦춰진다. 메모리에는 chunk 하나만 올라간다.
+    //chunk 마다 짧은 읽기 전용 트랜잭션으로 조회하므로 응답을 쓰는 동안 커넥션을 잡고 있지 않는다.
+    //응답은 MVC 비동기 전용 Executor(WebAsyncConfig)로 쓰고, 전체 시간 제한은 spring.mvc.async.request-timeout 이다.
+    //동시에 쓰는 응답 수, 대기 수가 datajpa.api.async 를 넘으면 503 (streamRejected)
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(defaultValue = "500") int chunkSize) {
+        int size = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+        StreamingResponseBody body = out -> {
+            Long lastId = 0L;
+            while (true) {
+                List<MemberDto> chunk = memberRepository.findMemberDtoAfter(lastId, PageRequest.of(0, size));
+                for (MemberDto dto : chunk) {
+                    out.write(objectMapper.writeValueAsBytes(dto));
+                    out.write('\n');
+                }
+                out.flush();
+                if (chunk.size() < size) return;
+                lastId = chunk.get(chunk.size() - 1).getId();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    //MVC 비동기 Executor 가 가득 차서 스트리밍을 시작하지 못함, 잠시 후 다시 시도
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> streamRejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+}
@@ -0,0 +1,48 @@
+package study.datajpa.api;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import study.datajpa.domain.Team;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.repository.TeamRepository;
+
+/**
+ * 팀 조회 API
+ */
+@RestController
+@RequestMapping("/api/teams")
+@RequiredArgsConstructor
+public class TeamApiController {
+    private final TeamRepository teamRepository;
+    private final EntityTagCache entityTagCache;
+
+    @GetMapping
+    public Page<TeamDto> teams(@PageableDefault(size = 20) Pageable pageable) {
+        return teamRepository.findTeamDtoPage(pageable);
+    }
+
+    //Team 은 2차 캐시에 있으므로 캐시된 ETag 가 없어도 대부분 DB 조회 없이 응답한다.
+    @GetMapping("/{id}")
+    public ResponseEntity<TeamDto> team(@PathVariable Long id,
+                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String cached = entityTagCache.teamTag(id);
+        if (EntityTagCache.matches(ifNoneMatch, cached)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cached).build();
+        }
+        long generation = entityTagCache.generation();
+        Team team = teamRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "team " + id));
+        String tag = entityTagCache.putTeam(team, generation);
+        if (EntityTagCache.matches(ifNoneMatch, tag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).build();
+        }
+        return ResponseEntity.ok().eTag(tag).body(new TeamDto(team.getId(), team.getName()));
+    }
+}
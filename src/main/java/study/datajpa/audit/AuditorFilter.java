@@ -0,0 +1,48 @@
+package study.datajpa.audit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * 요청 당 한번 사용자 ID 를 결정해서 AuditorHolder 에 보관
+ */
+//실제 사용 할 때는 스프링 시큐리티의 인증 정보(Principal)를 사용하고, 없으면 헤더, 그것도 없으면 system 으로 기록한다.
+//헤더는 누구나 보낼 수 있으므로 사용자를 인증한 게이트웨이(datajpa.audit.trusted-proxies 에 등록한 주소)에서 온 요청만 믿는다.
+//그 외의 요청이 보낸 헤더는 무시한다. (createdBy, lastModifiedBy, outbox actor, tombstone deletedBy 위조 방지)
+@Component
+public class AuditorFilter extends OncePerRequestFilter {
+    public static final String ACTOR_HEADER = "X-Actor-Id";
+
+    private final Set<String> trustedProxies;
+
+    public AuditorFilter(@Value("${datajpa.audit.trusted-proxies:}") Set<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AuditorHolder.set(resolveActor(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            AuditorHolder.clear();
+        }
+    }
+
+    private String resolveActor(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) return principal.getName();
+        if (!trustedProxies.contains(request.getRemoteAddr())) return null;
+        return request.getHeader(ACTOR_HEADER);
+    }
+}
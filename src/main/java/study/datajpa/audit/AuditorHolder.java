@@ -0,0 +1,43 @@
+package study.datajpa.audit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Optional;
+
+/**
+ * 현재 요청(스레드)의 사용자 ID 보관
+ */
+//AuditorAware.getCurrentAuditor 는 엔티티가 persist, update 될 때마다 호출된다.
+//사용자 ID 는 요청 시작 시 한번만 결정해서 ThreadLocal 에 보관하고, 같은 ID 는 같은 Optional 인스턴스를 재사용해
+//엔티티 저장마다 문자열, Optional 이 새로 만들어지지 않도록 한다.
+public final class AuditorHolder {
+    public static final String SYSTEM = "system";
+    private static final int MAX_INTERNED = 10_000;
+
+    private static final Cache<String, Optional<String>> interned = Caffeine.newBuilder().maximumSize(MAX_INTERNED).build();
+    private static final Optional<String> SYSTEM_AUDITOR = intern(SYSTEM);
+    private static final ThreadLocal<Optional<String>> current = new ThreadLocal<>();
+
+    private AuditorHolder() {
+    }
+
+    public static Optional<String> current() {
+        Optional<String> auditor = current.get();
+        return auditor != null ? auditor : SYSTEM_AUDITOR;
+    }
+
+    public static void set(String actorId) {
+        current.set(actorId == null || actorId.isEmpty() ? SYSTEM_AUDITOR : intern(actorId));
+    }
+
+    //스레드 풀에서 다음 요청에 사용자 정보가 남지 않도록 요청이 끝나면 반드시 호출
+    public static void clear() {
+        current.remove();
+    }
+
+    //헤더 값이 계속 달라져도 메모리가 늘지 않도록 일정 개수까지만 보관한다. (넘으면 자주 쓰이지 않는 것부터 제거)
+    static Optional<String> intern(String actorId) {
+        return interned.get(actorId, Optional::of);
+    }
+}
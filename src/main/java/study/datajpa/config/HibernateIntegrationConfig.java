@@ -0,0 +1,33 @@
+package study.datajpa.config;
+
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 스프링 빈으로 등록한 하이버네이트 확장을 EntityManagerFactory 에 연결
+ */
+//하이버네이트 이벤트 리스너는 Integrator 빈으로 등록하면 이곳에서 모아서 넘긴다.
+//Integrator 빈은 EntityManagerFactory 보다 먼저 만들어지므로 리포지토리, EntityManager 에 의존하면 안된다.
+@Configuration
+public class HibernateIntegrationConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateIntegrationCustomizer(ObjectProvider<Integrator> integrators,
+                                                                        ObjectProvider<StatementInspector> statementInspector) {
+        return properties -> {
+            List<Integrator> list = integrators.orderedStream().collect(Collectors.toList());
+            if (!list.isEmpty()) {
+                properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> list);
+            }
+            statementInspector.ifAvailable(inspector -> properties.put("hibernate.session_factory.statement_inspector", inspector));
+        };
+    }
+}
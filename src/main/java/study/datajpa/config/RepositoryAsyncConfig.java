@@ -0,0 +1,105 @@
+package study.datajpa.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.datajpa.datasource.ReadYourWrites;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 리포지토리 비동기 조회용 Executor
+ */
+//@Async(REPOSITORY_EXECUTOR) 를 붙인 리포지토리 메소드는 이 Executor 의 스레드에서 실행된다.
+//스레드마다 트랜잭션, EntityManager 가 따로 만들어지므로 호출한 쪽의 영속성 컨텍스트와 공유되지 않는다.
+//동시에 실행되는 작업 수는 커넥션 풀 크기 - reserve 로 제한해서 동기 요청이 커넥션을 얻지 못하는 상황을 막는다.
+@Slf4j
+@EnableAsync
+@Configuration
+public class RepositoryAsyncConfig {
+    public static final String REPOSITORY_EXECUTOR = "repositoryTaskExecutor";
+
+    //Executor 빈을 직접 등록하면 스프링 부트의 기본 applicationTaskExecutor 가 만들어지지 않으므로 같은 설정으로 함께 등록한다.
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = REPOSITORY_EXECUTOR)
+    public AsyncTaskExecutor repositoryTaskExecutor(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+            @Value("${datajpa.async.connection-reserve:2}") int connectionReserve,
+            @Value("${datajpa.async.queue-capacity:1000}") int queueCapacity,
+            @Value("${datajpa.async.virtual-threads:false}") boolean virtualThreads) {
+        int permits = Math.max(1, connectionPoolSize - connectionReserve);
+        TaskDecorator connectionLimiter = connectionLimiter(permits);
+        TaskDecorator decorator = task -> connectionLimiter.decorate(propagateReadYourWrites(task));
+
+        //JDK 21 이상이면 가상 스레드 사용, 블로킹되는 JDBC 호출도 스레드 수 부담 없이 기다릴 수 있다.
+        ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            ConcurrentTaskExecutor executor = new ConcurrentTaskExecutor(virtualThreadExecutor);
+            executor.setTaskDecorator(decorator);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(permits);
+        executor.setMaxPoolSize(permits);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("repository-");
+        executor.setTaskDecorator(decorator);
+        return executor;
+    }
+
+    //커넥션 풀을 다 쓰지 않도록 동시에 실행되는 작업 수를 permits 로 제한
+    private TaskDecorator connectionLimiter(int permits) {
+        Semaphore semaphore = new Semaphore(permits);
+        return task -> () -> {
+            semaphore.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                semaphore.release();
+            }
+        };
+    }
+
+    //호출한 요청의 read-your-writes 값을 작업 스레드에서도 사용, 방금 쓴 데이터를 비동기 조회에서도 primary 에서 읽는다.
+    //decorate 는 호출한 스레드에서 실행되므로 여기서 꺼낸 값이 호출한 쪽의 값이다.
+    private Runnable propagateReadYourWrites(Runnable task) {
+        ReadYourWrites caller = ReadYourWrites.current();
+        return () -> {
+            ReadYourWrites.bind(caller);
+            try {
+                task.run();
+            } finally {
+                ReadYourWrites.clear();
+            }
+        };
+    }
+
+    //소스 호환성(11)을 유지하기 위해 리플렉션으로 호출
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("virtual threads are not supported on this JDK, falling back to a platform thread pool");
+            return null;
+        }
+    }
+}
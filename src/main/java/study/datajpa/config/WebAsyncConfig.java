@@ -0,0 +1,41 @@
+package study.datajpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * MVC 비동기 처리(StreamingResponseBody, Callable) 전용 Executor
+ */
+//지정하지 않으면 applicationTaskExecutor(큐 크기 제한 없음)를 @Async 작업과 함께 쓰므로 느린 스트리밍 응답이 쌓이면 다른 작업이 밀린다.
+//동시에 쓰는 응답은 max-concurrent 개, 기다리는 요청은 queue-capacity 개까지이고 넘으면 바로 거절한다. (MemberApiController 에서 503)
+//응답 하나는 클라이언트가 다 받을 때까지(최대 spring.mvc.async.request-timeout) 스레드 하나를 잡고 있다.
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+    private final int maxConcurrent;
+    private final int queueCapacity;
+
+    public WebAsyncConfig(@Value("${datajpa.api.async.max-concurrent:8}") int maxConcurrent,
+                          @Value("${datajpa.api.async.queue-capacity:16}") int queueCapacity) {
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mvc-async-");
+        return executor;    //기본 AbortPolicy, 가득 차면 TaskRejectedException
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncTaskExecutor());
+    }
+}
@@ -0,0 +1,59 @@
+package study.datajpa.datasource;
+
+import java.util.function.LongConsumer;
+
+/**
+ * read-your-writes, 쓰기가 커밋된 후 읽기를 primary 로 고정하는 시각 (epoch millis)
+ */
+//요청마다 ReadYourWritesFilter 가 클라이언트가 돌려보낸 쿠키, 헤더의 값으로 새로 만들어 바인딩하므로
+//같은 사용자의 다음 요청이 다른 스레드, 다른 인스턴스에서 처리되어도 primary 를 읽는다.
+//요청 밖(스케줄러, 배치, 테스트)에서는 스레드 기본값을 사용한다. 스레드가 곧 호출한 쪽이므로 그대로 유효하다.
+//@Async 리포지토리 호출은 RepositoryAsyncConfig 가 호출한 쪽의 값을 작업 스레드로 넘긴다.
+public final class ReadYourWrites {
+    private static final ThreadLocal<ReadYourWrites> current = ThreadLocal.withInitial(() -> new ReadYourWrites(0, null));
+
+    private final LongConsumer onCommit;
+    private long primaryUntil;
+
+    private ReadYourWrites(long primaryUntil, LongConsumer onCommit) {
+        this.primaryUntil = primaryUntil;
+        this.onCommit = onCommit;
+    }
+
+    public static ReadYourWrites current() {
+        return current.get();
+    }
+
+    //onCommit 은 쓰기가 커밋될 때 마다 새 고정 시각으로 호출된다. (응답에 쿠키, 헤더를 쓰는 용도)
+    public static ReadYourWrites begin(long primaryUntil, LongConsumer onCommit) {
+        ReadYourWrites readYourWrites = new ReadYourWrites(primaryUntil, onCommit);
+        current.set(readYourWrites);
+        return readYourWrites;
+    }
+
+    public static void bind(ReadYourWrites readYourWrites) {
+        current.set(readYourWrites);
+    }
+
+    //스레드 풀에서 다음 요청에 값이 남지 않도록 요청, 작업이 끝나면 반드시 호출
+    public static void clear() {
+        current.remove();
+    }
+
+    public synchronized long getPrimaryUntil() {
+        return primaryUntil;
+    }
+
+    public boolean isPrimaryRequired() {
+        return System.currentTimeMillis() < getPrimaryUntil();
+    }
+
+    void committed(long windowMillis) {
+        long until;
+        synchronized (this) {
+            primaryUntil = Math.max(primaryUntil, System.currentTimeMillis() + windowMillis);
+            until = primaryUntil;
+        }
+        if (onCommit != null) onCommit.accept(until);
+    }
+}
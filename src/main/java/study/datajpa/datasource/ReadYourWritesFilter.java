@@ -0,0 +1,63 @@
+package study.datajpa.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * 요청 마다 read-your-writes 고정 시각을 쿠키, 헤더에서 읽어 ReadYourWrites 에 바인딩
+ */
+//쓰기가 커밋되면 고정 시각을 쿠키와 응답 헤더로 돌려준다. 브라우저는 쿠키를, 그 외 클라이언트는 헤더 값을 다음 요청에 실어 보낸다.
+//클라이언트가 보낸 값은 신뢰하지 않고 현재 시각 + window 를 넘지 않게 잘라서 읽기를 계속 primary 로 보내지 못하게 한다.
+//커밋 전에 응답이 이미 전송되기 시작했으면(스트리밍) 쿠키를 쓸 수 없으므로 그 요청의 쓰기는 다음 요청에 반영되지 않는다.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String NAME = "X-Primary-Until";
+    static final String COOKIE = "primary-until";
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long primaryUntil = Math.min(resolvePrimaryUntil(request), System.currentTimeMillis() + windowMillis);
+        ReadYourWrites.begin(primaryUntil, until -> {
+            if (response.isCommitted()) return;
+            response.setHeader(NAME, String.valueOf(until));
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (windowMillis + 999) / 1000));
+            response.addCookie(cookie);
+        });
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.clear();
+        }
+    }
+
+    private long resolvePrimaryUntil(HttpServletRequest request) {
+        String value = request.getHeader(NAME);
+        if (value == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE.equals(cookie.getName())) value = cookie.getValue();
+            }
+        }
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * primary + replica DataSource 구성
+ */
+//datajpa.datasource.replication.enabled=true 일 때만 적용된다. primary 는 spring.datasource 설정을 그대로 사용하고,
+//replica 는 datajpa.datasource.replication.replicas 에 나열한다.
+//read-your-writes 는 요청 단위로 ReadYourWritesFilter 가 쿠키, 헤더로 이어준다.
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+@ConditionalOnProperty(name = "datajpa.datasource.replication.enabled", havingValue = "true")
+public class ReplicationDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("datajpa.datasource.replication")
+    public ReplicationProperties replicationProperties() {
+        return new ReplicationProperties();
+    }
+
+    @Bean
+    public ReplicationRoutingDataSource routingDataSource(DataSourceProperties dataSourceProperties,
+                                                         ReplicationProperties replicationProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = replicationProperties.getReplicas().stream()
+                .map(replica -> {
+                    HikariDataSource dataSource = DataSourceBuilder.create()
+                            .type(HikariDataSource.class)
+                            .driverClassName(dataSourceProperties.determineDriverClassName())
+                            .url(replica.getUrl())
+                            .username(replica.getUsername() != null ? replica.getUsername() : dataSourceProperties.determineUsername())
+                            .password(replica.getPassword() != null ? replica.getPassword() : dataSourceProperties.determinePassword())
+                            .build();
+                    dataSource.setReadOnly(true);
+                    return dataSource;
+                })
+                .collect(Collectors.toList());
+        return new ReplicationRoutingDataSource(primary, replicas, replicationProperties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicationProperties replicationProperties) {
+        return new ReadYourWritesFilter(replicationProperties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicationRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
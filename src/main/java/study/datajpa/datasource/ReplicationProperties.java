@@ -0,0 +1,23 @@
+package study.datajpa.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+public class ReplicationProperties {
+    private boolean enabled;
+    private List<Replica> replicas = new ArrayList<>();
+    //쓰기 트랜잭션이 커밋된 후 이 시간 동안은 같은 클라이언트(쿠키, 헤더)의 읽기도 primary 로 보낸다. (복제 지연 대비, 0 이면 사용 안함)
+    private Duration readYourWritesWindow = Duration.ofSeconds(1);
+
+    @Getter @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,42 @@
+package study.datajpa.datasource;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+/**
+ * 샤딩을 사용하면 ShardIdGenerator, 아니면 시퀀스로 id 생성
+ */
+//샤드마다 시퀀스가 따로 있으므로 샤딩을 쓰면 시퀀스 값이 겹친다. ShardingDataSourceConfig 가 하이버네이트 설정으로
+//ShardIdGenerator 를 넘겨주면 현재 샤드(ShardContext) 번호를 포함한 id 를 만든다.
+//샤딩을 쓰지 않으면 @SequenceGenerator(allocationSize) 와 같은 pooled 시퀀스로 동작한다.
+public class ShardAwareIdGenerator extends SequenceStyleGenerator {
+    public static final String SHARD_ID_GENERATOR = "datajpa.sharding.id-generator";
+
+    private ShardIdGenerator shardIds;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        Object setting = serviceRegistry.getService(ConfigurationService.class).getSettings().get(SHARD_ID_GENERATOR);
+        if (setting instanceof ShardIdGenerator) {
+            shardIds = (ShardIdGenerator) setting;
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        if (shardIds == null) return super.generate(session, object);
+        Integer shard = ShardContext.current();
+        if (shard == null) {
+            throw new IllegalStateException("no shard selected for new " + object.getClass().getSimpleName());
+        }
+        return shardIds.nextId(shard);
+    }
+}
@@ -0,0 +1,66 @@
+package study.datajpa.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 현재 스레드가 사용할 샤드 번호
+ */
+//ShardRoutingDataSource 가 커넥션을 얻을 때 읽는다. 설정되지 않았으면 기본 샤드(0, spring.datasource)를 사용한다.
+public final class ShardContext {
+    private static final ThreadLocal<Integer> current = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return current.get();
+    }
+
+    //중첩 호출이 끝나면 이전 샤드로 되돌린다.
+    public static <T> T call(int shard, Supplier<T> task) {
+        Integer previous = current.get();
+        current.set(shard);
+        try {
+            return task.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    //샤드 마다 순서대로 실행, 샤딩을 사용하지 않으면(routingDataSource 가 null) 현재 스레드에서 한번만 실행한다.
+    //아웃박스 릴레이, tombstone 정리처럼 샤드 별 테이블을 모두 처리해야 하는 작업에 사용한다.
+    public static <T> List<T> onEachShard(ShardRoutingDataSource routingDataSource, Supplier<T> task) {
+        List<T> results = new ArrayList<>();
+        if (routingDataSource == null) {
+            results.add(task.get());
+            return results;
+        }
+        for (int shard = 0; shard < routingDataSource.getShardCount(); shard++) {
+            results.add(call(shard, task));
+        }
+        return results;
+    }
+
+    //aspect 의 proceed 처럼 Throwable 을 던지는 작업
+    static Object invoke(int shard, Invocation invocation) throws Throwable {
+        Integer previous = current.get();
+        current.set(shard);
+        try {
+            return invocation.proceed();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private static void restore(Integer previous) {
+        if (previous == null) current.remove();
+        else current.set(previous);
+    }
+
+    @FunctionalInterface
+    interface Invocation {
+        Object proceed() throws Throwable;
+    }
+}
@@ -0,0 +1,49 @@
+package study.datajpa.datasource;
+
+/**
+ * 샤드 번호를 포함하는 전역 유일 ID (snowflake 방식)
+ */
+//| 41 bit 밀리초(2020-01-01 기준) | 7 bit 샤드 | 5 bit worker | 10 bit 순번 |
+//ID 에 샤드 번호가 들어 있으므로 id 만으로 어느 샤드에 저장된 row 인지 알 수 있다. (findById 라우팅)
+//worker 는 애플리케이션 인스턴스 마다 다르게 설정해야 한다. 같은 밀리초에 순번을 다 쓰거나 시계가 뒤로 가면
+//마지막 시각을 1ms 씩 앞당겨 사용하므로 대기 없이 계속 증가하는 값을 만든다.
+public class ShardIdGenerator {
+    private static final long EPOCH_MILLIS = 1577836800000L;
+    private static final int SEQUENCE_BITS = 10;
+    private static final int WORKER_BITS = 5;
+    private static final int SHARD_BITS = 7;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+    public static final int MAX_WORKERS = 1 << WORKER_BITS;
+    private static final long MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+
+    private final long workerId;
+    private long lastMillis;
+    private long sequence;
+
+    public ShardIdGenerator(int workerId) {
+        if (workerId < 0 || workerId >= MAX_WORKERS) {
+            throw new IllegalArgumentException("worker id must be between 0 and " + (MAX_WORKERS - 1));
+        }
+        this.workerId = workerId;
+    }
+
+    public synchronized long nextId(int shard) {
+        if (shard < 0 || shard >= MAX_SHARDS) throw new IllegalArgumentException("invalid shard " + shard);
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        if (now > lastMillis) {
+            lastMillis = now;
+            sequence = 0;
+        } else if (++sequence > MAX_SEQUENCE) {
+            lastMillis++;
+            sequence = 0;
+        }
+        return (lastMillis << (SHARD_BITS + WORKER_BITS + SEQUENCE_BITS))
+                | ((long) shard << (WORKER_BITS + SEQUENCE_BITS))
+                | (workerId << SEQUENCE_BITS)
+                | sequence;
+    }
+
+    public static int shardOf(long id) {
+        return (int) ((id >>> (WORKER_BITS + SEQUENCE_BITS)) & (MAX_SHARDS - 1));
+    }
+}
@@ -0,0 +1,96 @@
+package study.datajpa.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MemberRepository, TeamRepository 호출을 팀 키로 샤드에 라우팅
+ */
+//회원은 팀과 같은 샤드에 저장한다. 샤드는 인자에서 찾는다.
+// - Member: id 가 있으면 id 의 샤드, 없으면(새 회원) team id 의 샤드
+// - Team: id 가 있으면 id 의 샤드, 없으면(새 팀) 샤드를 돌아가면서 배정
+// - ~ById 메소드의 Long id, id 컬렉션: id 의 샤드
+//인자로 샤드를 알 수 없는 조회(findAll, findByUsername 등)는 ShardContext 나 이미 샤드에 묶인 트랜잭션 안에서만 호출할 수 있다.
+//여러 샤드의 결과가 필요하면 ShardedQueryExecutor 를 사용한다.
+@Aspect
+public class ShardRoutingAspect {
+    private static final int ANY_SHARD = -1;
+
+    private final ShardRoutingDataSource routingDataSource;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardRoutingAspect(ShardRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Around("target(study.datajpa.repository.MemberRepository) || target(study.datajpa.repository.TeamRepository)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Integer shard = null;
+        for (Object arg : joinPoint.getArgs()) {
+            shard = merge(shard, shardOf(arg, isIdMethod(method)), method);
+        }
+        Integer bound = routingDataSource.boundShard();
+        if (shard != null && shard == ANY_SHARD) {
+            Integer context = bound != null ? bound : ShardContext.current();
+            shard = context != null ? context : Math.floorMod(nextShard.getAndIncrement(), routingDataSource.getShardCount());
+        }
+        if (shard == null) {
+            Integer context = ShardContext.current();
+            if (context == null && bound == null) {
+                throw new IllegalStateException("cannot route " + method + " to a shard, "
+                        + "run it inside ShardContext or use ShardedQueryExecutor for cross-shard queries");
+            }
+            if (bound == null) routingDataSource.bindToTransaction(context);
+            return joinPoint.proceed();
+        }
+        if (bound != null && !bound.equals(shard)) {
+            throw new IllegalStateException("transaction is bound to shard " + bound + ", " + method + " needs shard " + shard);
+        }
+        //호출자의 트랜잭션 안이면 커밋 때 flush 되는 insert 도 같은 샤드로 가도록 지금 묶는다.
+        routingDataSource.bindToTransaction(shard);
+        return ShardContext.invoke(shard, joinPoint::proceed);
+    }
+
+    //새 팀은 어느 샤드에 저장해도 되므로 ANY_SHARD, 현재 샤드가 없으면 돌아가면서 배정한다.
+    private Integer shardOf(Object arg, boolean idMethod) {
+        if (arg instanceof Member) {
+            Member member = (Member) arg;
+            if (member.getId() != null) return ShardIdGenerator.shardOf(member.getId());
+            if (member.getTeam() == null || member.getTeam().getId() == null) {
+                throw new IllegalArgumentException("member " + member.getUsername() + " has no saved team to pick a shard");
+            }
+            return ShardIdGenerator.shardOf(member.getTeam().getId());
+        }
+        if (arg instanceof Team) {
+            Team team = (Team) arg;
+            return team.getId() != null ? ShardIdGenerator.shardOf(team.getId()) : ANY_SHARD;
+        }
+        if (idMethod && arg instanceof Long) {
+            return ShardIdGenerator.shardOf((Long) arg);
+        }
+        if (arg instanceof Iterable) {
+            Integer shard = null;
+            for (Object element : (Iterable<?>) arg) {
+                shard = merge(shard, shardOf(element, idMethod), "batch");
+            }
+            return shard;
+        }
+        return null;
+    }
+
+    private Integer merge(Integer current, Integer next, String method) {
+        if (current == null || current == ANY_SHARD) return next == null ? current : next;
+        if (next == null || next == ANY_SHARD || current.equals(next)) return current;
+        throw new IllegalArgumentException(method + " spans shards " + current + " and " + next + ", split the call per shard");
+    }
+
+    private boolean isIdMethod(String method) {
+        return method.contains("ById") || method.equals("getOne");
+    }
+}
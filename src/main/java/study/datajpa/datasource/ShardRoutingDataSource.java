@@ -0,0 +1,89 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ShardContext 의 샤드 번호로 DataSource 를 고르는 DataSource
+ */
+//트랜잭션 안에서 ShardContext 를 정할 수 있도록 반드시 LazyConnectionDataSourceProxy 로 감싸서 사용한다.
+//트랜잭션은 ShardRoutingAspect 가 처음 라우팅한 샤드(또는 처음 커넥션을 얻은 샤드)에 묶이고, 트랜잭션이 끝날 때 까지 boundShard() 로 확인할 수 있다.
+//묶인 뒤에는 ShardContext 보다 묶인 샤드를 우선한다. snowflake id 의 persist 는 SQL 없이 끝나고 insert 는 커밋 때 flush 되므로
+//그때는 ShardContext 가 이미 되돌려져 있기 때문이다.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        if (shards.isEmpty() || shards.size() > ShardIdGenerator.MAX_SHARDS) {
+            throw new IllegalArgumentException("shard count must be between 1 and " + ShardIdGenerator.MAX_SHARDS);
+        }
+        this.shards = shards;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    //현재 트랜잭션이 커넥션을 얻은 샤드, 아직 커넥션이 없으면 null
+    public Integer boundShard() {
+        return (Integer) TransactionSynchronizationManager.getResource(this);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer bound = boundShard();
+        if (bound != null) return bound;
+        Integer shard = ShardContext.current();
+        bindToTransaction(shard == null ? 0 : shard);
+        return shard;
+    }
+
+    //진행 중인 트랜잭션을 샤드에 묶는다. 트랜잭션이 없거나 이미 묶여 있으면 아무것도 하지 않는다.
+    void bindToTransaction(int shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, shard);
+        //REQUIRES_NEW 로 트랜잭션이 중단되면 안쪽 트랜잭션이 다른 샤드를 쓸 수 있도록 풀었다가 재개할 때 다시 묶는다.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ShardRoutingDataSource.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(ShardRoutingDataSource.this, shard);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ShardRoutingDataSource.this);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        for (DataSource shard : shards) {
+            if (shard instanceof HikariDataSource) {
+                ((HikariDataSource) shard).close();
+            }
+        }
+    }
+}
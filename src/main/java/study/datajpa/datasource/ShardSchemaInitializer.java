@@ -0,0 +1,40 @@
+package study.datajpa.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.schema.TargetType;
+
+import java.util.EnumSet;
+
+/**
+ * 샤드 1 이후의 스키마 생성
+ */
+//하이버네이트의 ddl-auto 는 기본 샤드(0) 에만 실행되므로 같은 매핑(Metadata)으로 나머지 샤드에도 drop, create 를 실행한다.
+//SessionFactory 가 만들어지는 중(integrate)에 실행되므로 리포지토리보다 먼저 끝난다.
+@Slf4j
+public class ShardSchemaInitializer implements Integrator {
+    private final int shardCount;
+
+    public ShardSchemaInitializer(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        for (int shard = 1; shard < shardCount; shard++) {
+            ShardContext.call(shard, () -> {
+                new SchemaExport().create(EnumSet.of(TargetType.DATABASE), metadata);
+                return null;
+            });
+            log.info("created schema on shard {}", shard);
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,102 @@
+package study.datajpa.datasource;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 모든 샤드에서 같은 조회를 실행하고 결과를 합치는 scatter-gather
+ */
+//샤드마다 다른 스레드에서 읽기 전용 트랜잭션으로 동시에 실행한다. 호출한 쪽의 트랜잭션, 영속성 컨텍스트와는 공유되지 않는다.
+//정렬은 각 샤드에서 DB 가 하고, 합칠 때 같은 Sort 로 결과 객체의 속성(getter)을 비교해 다시 정렬한다.
+//따라서 Sort 의 속성 이름이 JPQL 속성과 결과 객체(엔티티, DTO)의 속성에 모두 있어야 한다.
+public class ShardedQueryExecutor {
+    private static final Sort DEFAULT_SORT = Sort.by("id");
+
+    private final ShardRoutingDataSource routingDataSource;
+    private final TransactionTemplate readTemplate;
+    private final AsyncTaskExecutor executor;
+
+    public ShardedQueryExecutor(ShardRoutingDataSource routingDataSource, PlatformTransactionManager transactionManager,
+                                AsyncTaskExecutor executor) {
+        this.routingDataSource = routingDataSource;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.executor = executor;
+    }
+
+    //샤드 순서대로 이어붙인다.
+    public <T> List<T> gather(Supplier<List<T>> query) {
+        return scatter(query).stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    public <T> List<T> gather(Supplier<List<T>> query, Sort sort) {
+        List<T> merged = gather(query);
+        merged.sort(comparator(sort));
+        return merged;
+    }
+
+    /**
+     * 샤드를 합친 페이지
+     */
+    //n 번째 페이지를 만들려면 샤드마다 처음부터 (n + 1) * size 개를 읽어 합친 뒤 앞의 n * size 개를 버려야 한다.
+    //페이지가 깊어질수록 샤드 수 만큼 비용이 늘어나므로 깊은 페이지는 keyset 조회를 샤드마다 실행하는 편이 낫다.
+    //정렬이 없으면 id 로 정렬한다. (샤드를 합친 순서가 요청마다 같아야 페이지가 겹치거나 빠지지 않는다)
+    public <T> Page<T> page(Function<Pageable, Page<T>> query, Pageable pageable) {
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : DEFAULT_SORT;
+        int window = Math.toIntExact(pageable.getOffset() + pageable.getPageSize());
+        Pageable perShard = PageRequest.of(0, window, sort);
+        List<Page<T>> pages = scatter(() -> query.apply(perShard));
+
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        List<T> merged = new ArrayList<>();
+        pages.forEach(page -> merged.addAll(page.getContent()));
+        merged.sort(comparator(sort));
+        List<T> content = merged.stream().skip(pageable.getOffset()).limit(pageable.getPageSize()).collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private <R> List<R> scatter(Supplier<R> query) {
+        List<CompletableFuture<R>> futures = IntStream.range(0, routingDataSource.getShardCount())
+                .mapToObj(shard -> CompletableFuture.supplyAsync(
+                        () -> ShardContext.call(shard, () -> readTemplate.execute(status -> query.get())), executor))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    static <T> Comparator<T> comparator(Sort sort) {
+        Comparator<T> result = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            String property = order.getProperty();
+            Comparator<T> byProperty = (a, b) -> compare(new BeanWrapperImpl(a).getPropertyValue(property),
+                    new BeanWrapperImpl(b).getPropertyValue(property));
+            result = result.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return result;
+    }
+
+    //null 은 앞으로 (H2 의 오름차순 정렬과 같음)
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+}
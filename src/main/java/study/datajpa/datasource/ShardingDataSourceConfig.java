@@ -0,0 +1,92 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 팀 기준 수평 샤딩 DataSource 구성
+ */
+//datajpa.datasource.sharding.enabled=true 일 때만 적용된다. 샤드 0 은 spring.datasource 설정을 그대로 사용하고
+//나머지 샤드는 datajpa.datasource.sharding.shards 에 나열한다. replication 과 함께 사용할 수 없다.
+//샤드 별로 쿼리 결과가 다르므로 쿼리 캐시는 끈다. (엔티티 2차 캐시는 id 가 전역 유일하므로 그대로 사용)
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+@ConditionalOnProperty(name = "datajpa.datasource.sharding.enabled", havingValue = "true")
+public class ShardingDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("datajpa.datasource.sharding")
+    public ShardingProperties shardingProperties() {
+        return new ShardingProperties();
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties dataSourceProperties, ShardingProperties shardingProperties) {
+        List<DataSource> shards = new ArrayList<>();
+        HikariDataSource first = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        first.setPoolName("shard0");
+        shards.add(first);
+        for (ShardingProperties.Shard shard : shardingProperties.getShards()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(shard.getUrl())
+                    .username(shard.getUsername() != null ? shard.getUsername() : dataSourceProperties.determineUsername())
+                    .password(shard.getPassword() != null ? shard.getPassword() : dataSourceProperties.determinePassword())
+                    .build();
+            dataSource.setPoolName("shard" + shards.size());
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardingHibernateCustomizer(ShardingProperties shardingProperties) {
+        ShardIdGenerator shardIdGenerator = new ShardIdGenerator(shardingProperties.getWorkerId());
+        return properties -> {
+            properties.put(ShardAwareIdGenerator.SHARD_ID_GENERATOR, shardIdGenerator);
+            properties.put("hibernate.cache.use_query_cache", "false");
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datajpa.datasource.sharding.initialize-schema", havingValue = "true")
+    public ShardSchemaInitializer shardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource) {
+        return new ShardSchemaInitializer(shardRoutingDataSource.getShardCount());
+    }
+
+    @Bean
+    public ShardRoutingAspect shardRoutingAspect(ShardRoutingDataSource shardRoutingDataSource) {
+        return new ShardRoutingAspect(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardedQueryExecutor shardedQueryExecutor(ShardRoutingDataSource shardRoutingDataSource, PlatformTransactionManager transactionManager,
+                                                     @Lazy @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor executor) {
+        return new ShardedQueryExecutor(shardRoutingDataSource, transactionManager, executor);
+    }
+}
@@ -0,0 +1,25 @@
+package study.datajpa.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+public class ShardingProperties {
+    private boolean enabled;
+    //샤드 0 은 spring.datasource, 여기에 나열한 DataSource 가 샤드 1, 2, ... 가 된다.
+    private List<Shard> shards = new ArrayList<>();
+    //애플리케이션 인스턴스 마다 다른 값 (0 ~ 31), id 에 포함된다.
+    private int workerId;
+    //기동 시 샤드 1 이후의 스키마를 하이버네이트 매핑으로 다시 만든다. (ddl-auto: create 와 같음, 로컬, 테스트용)
+    private boolean initializeSchema;
+
+    @Getter @Setter
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -1,5 +1,6 @@
 package study.datajpa.domain;
 
+import lombok.Getter;
 import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
@@ -9,12 +10,14 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import javax.persistence.Column;
 import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 import java.time.LocalDateTime;
 
 //콜백 리스너 클래스 지정
 //JPA 엔티티 리스너 == 엔티티 persist, update 에 대한 감사(Auditing) 정보를 캡처
 @EntityListeners(AuditingEntityListener.class)
 @MappedSuperclass
+@Getter
 public class BaseEntity extends BaseTimeEntity{
     //AuditorAware Bean 객체에서 사용자 정보를 가져옴 .getCurrentAuditor 메소드
     @Column(updatable = false)
@@ -23,4 +26,9 @@ public class BaseEntity extends BaseTimeEntity{
 
     @LastModifiedBy
     private String lastModifiedBy;
+
+    //낙관적 락, 변경 시 where version = ? 조건으로 update 하고 version 을 1 올린다.
+    //다른 트랜잭션이 먼저 수정했다면 update 된 row 가 없으므로 OptimisticLockException 이 발생한다.
+    @Version
+    private Long version;
 }
@@ -1,5 +1,6 @@
 package study.datajpa.domain;
 
+import lombok.Getter;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -9,8 +10,10 @@ import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
 import java.time.LocalDateTime;
 
+//lastModifiedDate 는 증분 동기화(IncrementalSync)의 워터마크로 사용, 엔티티마다 (last_modified_date) 인덱스를 둔다.
 @EntityListeners(AuditingEntityListener.class)
 @MappedSuperclass
+@Getter
 public class BaseTimeEntity {
     @Column(updatable = false)
     @CreatedDate
@@ -1,14 +1,35 @@
 package study.datajpa.domain;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
+//쿼리 캐시는 id 만 저장하기 때문에 Member 도 2차 캐시에 있어야 쿼리 캐시 hit 시 DB 조회가 없다.
+//인덱스는 IndexAdvisor 가 리포지토리 쿼리 메소드에서 계산한 결과
+//username 단독 인덱스는 (username, member_id) keyset 조회용, 보조 인덱스 끝에는 PK 가 포함된다.
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username_age", columnList = "username, age"),
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_last_modified_date", columnList = "last_modified_date")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @ToString(of = {"id", "username", "age"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Member extends BaseEntity {
-    @Id @GeneratedValue
+    //AUTO 는 row 마다 시퀀스를 조회한다. increment_size 만큼 id 를 미리 할당(pooled optimizer)해서 배치 insert 가 가능하게 한다.
+    //샤딩을 사용하면 시퀀스 대신 샤드 번호를 포함한 전역 유일 id 를 만든다. (ShardAwareIdGenerator)
+    @Id
+    @GeneratedValue(generator = "member_seq_generator")
+    @GenericGenerator(name = "member_seq_generator", strategy = "study.datajpa.datasource.ShardAwareIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "member_seq"),
+            @Parameter(name = "increment_size", value = "50")})
     @Column(name = "member_id")
     private Long id;
 
@@ -41,4 +62,8 @@ public class Member extends BaseEntity {
     public void changeName(String newName) {
         this.username = newName;
     }
+
+    public void changeAge(int newAge) {
+        this.age = newAge;
+    }
 }
@@ -4,22 +4,46 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+//Team 은 거의 변경되지 않으므로 2차 캐시에 보관
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_team_name", columnList = "name"),
+        @Index(name = "idx_team_last_modified_date", columnList = "last_modified_date")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @ToString(of = {"id", "name"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Team extends BaseEntity{
 
-    @Id @GeneratedValue
+    //AUTO 는 row 마다 시퀀스를 조회한다. increment_size 만큼 id 를 미리 할당(pooled optimizer)해서 배치 insert 가 가능하게 한다.
+    //샤딩을 사용하면 시퀀스 대신 샤드 번호를 포함한 전역 유일 id 를 만든다. (ShardAwareIdGenerator)
+    @Id
+    @GeneratedValue(generator = "team_seq_generator")
+    @GenericGenerator(name = "team_seq_generator", strategy = "study.datajpa.datasource.ShardAwareIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "team_seq"),
+            @Parameter(name = "increment_size", value = "50")})
     @Column(name = "team_id")
     private Long id;
 
     private String name;
 
+    //Team 목록을 돌면서 members 를 초기화하면 Team 마다 쿼리가 나간다. (N+1)
+    //@BatchSize 로 아직 초기화되지 않은 다른 Team 들의 members 를 in 쿼리로 한번에 가져온다.
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)    //컬렉션 캐시는 Member 의 id 만 저장, Member 도 캐시되어야 효과가 있다.
+    @OptimisticLock(excluded = true)    //회원이 추가될 때마다 Team 의 version 이 올라가 충돌하지 않도록 제외
     @OneToMany(mappedBy = "team")
     List<Member> members = new ArrayList<>();
 
@@ -0,0 +1,34 @@
+package study.datajpa.domain;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * 팀 별, 나이 별 회원 수 (집계 테이블)
+ */
+//회원 수가 아니라 (팀, 나이) 조합 수 만큼만 row 가 생기므로 팀 별 회원 수, 최소/최대/평균 나이, 나이 분포를 회원을 읽지 않고 계산할 수 있다.
+//값은 TeamAgeStatsWriter 가 회원 변경과 같은 트랜잭션에서 JDBC 로 증감하고, 벌크 연산 뒤에는 TeamAgeStatsReconciler 가 다시 계산한다.
+@Entity
+@IdClass(TeamAgeCount.Key.class)
+@Getter @ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamAgeCount {
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    @Id
+    private int age;
+
+    private long memberCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long teamId;
+        private int age;
+    }
+}
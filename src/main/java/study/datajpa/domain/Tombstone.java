@@ -0,0 +1,39 @@
+package study.datajpa.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 삭제 기록
+ */
+//삭제된 row 는 lastModifiedDate 로 찾을 수 없으므로 삭제될 때 TombstoneWriter 가 같은 트랜잭션에서 기록한다.
+//증분 동기화는 (deletedAt, id) 워터마크로 삭제분만 읽는다.
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_tombstone_entity_type_deleted_at", columnList = "entity_type, deleted_at"),
+        @Index(name = "idx_tombstone_deleted_at", columnList = "deleted_at")})     //보관 기간이 지난 tombstone 삭제
+@Getter @ToString(of = {"id", "entityType", "entityId", "deletedAt"})
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class Tombstone {
+    //insert 는 TombstoneWriter 의 JDBC 로 하므로 IDENTITY 를 사용
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "tombstone_id")
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Column(nullable = false)
+    private LocalDateTime deletedAt;
+
+    private String deletedBy;
+}
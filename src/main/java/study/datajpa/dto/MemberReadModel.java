@@ -0,0 +1,15 @@
+package study.datajpa.dto;
+
+import lombok.Value;
+
+/**
+ * JDBC 조회 전용 불변 모델
+ */
+//영속성 컨텍스트에 등록되지 않으므로 변경 감지, 지연 로딩이 없다. 팀은 id 만 가진다.
+@Value
+public class MemberReadModel {
+    Long id;
+    String username;
+    int age;
+    Long teamId;
+}
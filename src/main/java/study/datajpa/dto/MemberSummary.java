@@ -0,0 +1,12 @@
+package study.datajpa.dto;
+
+/**
+ * 인터페이스 기반 Closed Projection
+ */
+//getter 이름과 엔티티의 필드 이름이 같아야 한다. 스프링 데이터 JPA 가 프록시 구현체를 만들어 준다.
+//필요한 컬럼만 select 하기 때문에 엔티티, 스냅샷, team 프록시가 만들어지지 않는다.
+public interface MemberSummary {
+    Long getId();
+    String getUsername();
+    int getAge();
+}
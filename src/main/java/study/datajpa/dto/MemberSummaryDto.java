@@ -0,0 +1,15 @@
+package study.datajpa.dto;
+
+import lombok.Value;
+
+/**
+ * 클래스 기반 Projection
+ */
+//생성자의 파라미터 이름으로 매칭, 메소드 이름으로 쿼리를 만들 때는 JPQL 의 new 생성자 문법으로 바뀌어 실행된다.
+//프록시 없이 값 객체를 바로 만들기 때문에 인터페이스 기반보다 가볍다.
+@Value
+public class MemberSummaryDto {
+    Long id;
+    String username;
+    int age;
+}
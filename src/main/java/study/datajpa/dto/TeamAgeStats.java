@@ -0,0 +1,55 @@
+package study.datajpa.dto;
+
+import lombok.Value;
+import study.datajpa.domain.TeamAgeCount;
+
+import java.util.*;
+
+/**
+ * 팀 별 회원 수, 나이 통계
+ */
+//histogram 은 10살 단위 구간의 시작 나이 -> 회원 수, 회원이 없는 팀은 memberCount 0, 나이 값은 null
+@Value
+public class TeamAgeStats {
+    public static final int BUCKET_SIZE = 10;
+
+    Long teamId;
+    long memberCount;
+    Integer minAge;
+    Integer maxAge;
+    Double averageAge;
+    SortedMap<Integer, Long> histogram;
+
+    public static TeamAgeStats empty(Long teamId) {
+        return new TeamAgeStats(teamId, 0, null, null, null, Collections.emptySortedMap());
+    }
+
+    //teamId, age 순서로 정렬된 집계 row 를 팀 별 통계로 합친다.
+    public static List<TeamAgeStats> of(List<TeamAgeCount> counts) {
+        List<TeamAgeStats> result = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= counts.size(); i++) {
+            if (i == counts.size() || !counts.get(i).getTeamId().equals(counts.get(from).getTeamId())) {
+                result.add(of(counts.subList(from, i)));
+                from = i;
+            }
+        }
+        return result;
+    }
+
+    private static TeamAgeStats of(List<TeamAgeCount> team) {
+        long count = 0;
+        long ageSum = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        for (TeamAgeCount c : team) {
+            count += c.getMemberCount();
+            ageSum += (long) c.getAge() * c.getMemberCount();
+            min = Math.min(min, c.getAge());
+            max = Math.max(max, c.getAge());
+            histogram.merge(Math.floorDiv(c.getAge(), BUCKET_SIZE) * BUCKET_SIZE, c.getMemberCount(), Long::sum);
+        }
+        return new TeamAgeStats(team.get(0).getTeamId(), count, min, max, (double) ageSum / count, histogram);
+    }
+}
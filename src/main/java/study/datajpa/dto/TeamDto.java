@@ -0,0 +1,11 @@
+package study.datajpa.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TeamDto {
+    private Long id;
+    private String name;
+}
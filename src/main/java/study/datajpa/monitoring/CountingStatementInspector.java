@@ -0,0 +1,25 @@
+package study.datajpa.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+/**
+ * 하이버네이트가 실행하는 SQL 수를 센다
+ */
+//SQL 을 로그로 남기지 않고 카운트만 올리기 때문에 운영 환경에서 켜두어도 부담이 없다.
+@Component
+public class CountingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryMetricsContext.current().statementPrepared(isSelect(sql));
+        return sql;
+    }
+
+    //지연 로딩은 select 만 실행하므로 flush 의 insert, update 와 구분해서 센다.
+    private boolean isSelect(String sql) {
+        int i = 0;
+        while (i < sql.length() && (Character.isWhitespace(sql.charAt(i)) || sql.charAt(i) == '(')) i++;
+        return sql.regionMatches(true, i, "select", 0, 6) || sql.regionMatches(true, i, "with", 0, 4);
+    }
+}
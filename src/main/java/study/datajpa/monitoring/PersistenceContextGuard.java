@@ -0,0 +1,155 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 영속성 컨텍스트(1차 캐시) 크기 제한
+ */
+//엔티티가 로딩될 때마다 세션이 관리하는 엔티티 수를 확인해서 warnThreshold 를 넘으면 경고, failThreshold 를 넘으면 예외를 던진다.
+//autoReadOnly 를 켜면 경고 이후 로딩되는 엔티티는 스냅샷 없이 읽기 전용으로 로딩된다. (이후 로딩된 엔티티의 변경은 flush 되지 않는다)
+//트랜잭션마다 최대 엔티티 수와 스냅샷 메모리 추정값을 트랜잭션이 끝날 때 기록한다.
+@Slf4j
+@Component
+public class PersistenceContextGuard implements Integrator {
+    //스냅샷(loadedState)은 속성 수 만큼의 Object[], 값 객체는 엔티티와 공유하므로 참조 크기만 계산한다.
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 8;
+
+    //트랜잭션 밖에서는 스레드에서 마지막으로 경고한 세션을 기억해서 세션 당 한번만 경고
+    private static final ThreadLocal<WeakReference<EventSource>> warnedOutsideTransaction = new ThreadLocal<>();
+
+    private final PersistenceContextGuardProperties properties;
+    private final DistributionSummary entitiesSummary;
+    private final DistributionSummary snapshotSummary;
+    private final Counter warnCounter;
+    private final Counter failCounter;
+
+    public PersistenceContextGuard(PersistenceContextGuardProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.entitiesSummary = DistributionSummary.builder("persistence.context.entities")
+                .description("peak managed entities per transaction")
+                .register(registry);
+        this.snapshotSummary = DistributionSummary.builder("persistence.context.snapshot.bytes")
+                .description("estimated peak snapshot memory per transaction")
+                .baseUnit("bytes")
+                .register(registry);
+        this.warnCounter = Counter.builder("persistence.context.threshold.exceeded").tag("level", "warn").register(registry);
+        this.failCounter = Counter.builder("persistence.context.threshold.exceeded").tag("level", "fail").register(registry);
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        serviceRegistry.getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, (PostLoadEventListener) this::onPostLoad);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private void onPostLoad(PostLoadEvent event) {
+        EventSource session = event.getSession();
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        int managed = persistenceContext.getNumberOfManagedEntities();
+        EntityEntry entry = persistenceContext.getEntry(event.getEntity());
+        long snapshotBytes = entry == null || entry.getStatus() == Status.READ_ONLY
+                ? 0 : ARRAY_HEADER_BYTES + (long) REFERENCE_BYTES * event.getPersister().getPropertyTypes().length;
+        Usage usage = currentUsage(session);
+        if (usage != null) usage.loaded(managed, snapshotBytes);
+
+        int failThreshold = properties.getFailThreshold();
+        if (failThreshold > 0 && managed > failThreshold) {
+            failCounter.increment();
+            throw new IllegalStateException("persistence context holds " + managed + " managed entities (limit " + failThreshold
+                    + "), clear the EntityManager in chunks or use a read-only / stateless read");
+        }
+        int warnThreshold = properties.getWarnThreshold();
+        if (warnThreshold > 0 && managed > warnThreshold && firstWarning(session, usage)) {
+            warnCounter.increment();
+            log.warn("persistence context holds {} managed entities (warn threshold {}), last loaded {}",
+                    managed, warnThreshold, event.getPersister().getEntityName());
+            if (properties.isAutoReadOnly() && !session.isDefaultReadOnly()) {
+                session.setDefaultReadOnly(true);
+                log.warn("entities loaded from now on in this session are read-only");
+            }
+        }
+    }
+
+    private boolean firstWarning(EventSource session, Usage usage) {
+        if (usage != null) {
+            if (usage.warned) return false;
+            usage.warned = true;
+            return true;
+        }
+        WeakReference<EventSource> last = warnedOutsideTransaction.get();
+        if (last != null && last.get() == session) return false;
+        warnedOutsideTransaction.set(new WeakReference<>(session));
+        return true;
+    }
+
+    //트랜잭션 동기화가 활성화된 경우에만 세션 별 사용량을 모으고 트랜잭션이 끝날 때 기록
+    private Usage currentUsage(EventSource session) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        Usage usage = (Usage) TransactionSynchronizationManager.getResource(session);
+        if (usage == null) {
+            usage = new Usage();
+            TransactionSynchronizationManager.bindResource(session, usage);
+            TransactionSynchronizationManager.registerSynchronization(new UsageRecorder(session, usage));
+        }
+        return usage;
+    }
+
+    private static class Usage {
+        private int lastManaged;
+        private int peakManaged;
+        private long snapshotBytes;
+        private long peakSnapshotBytes;
+        private boolean warned;
+
+        //관리 엔티티 수가 줄었으면 clear, detach 된 것이므로 스냅샷 추정값을 다시 센다.
+        void loaded(int managed, long bytes) {
+            if (managed < lastManaged) snapshotBytes = 0;
+            lastManaged = managed;
+            snapshotBytes += bytes;
+            peakManaged = Math.max(peakManaged, managed);
+            peakSnapshotBytes = Math.max(peakSnapshotBytes, snapshotBytes);
+        }
+    }
+
+    private class UsageRecorder implements TransactionSynchronization {
+        private final EventSource session;
+        private final Usage usage;
+
+        UsageRecorder(EventSource session, Usage usage) {
+            this.session = session;
+            this.usage = usage;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(session);
+            entitiesSummary.record(usage.peakManaged);
+            snapshotSummary.record(usage.peakSnapshotBytes);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package study.datajpa.monitoring;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.persistence-context")
+public class PersistenceContextGuardProperties {
+    //영속성 컨텍스트의 엔티티 수가 이 값을 넘으면 경고 로그, 0 이면 사용 안함
+    private int warnThreshold = 10_000;
+    //이 값을 넘으면 예외로 트랜잭션을 중단, 0 이면 사용 안함
+    private int failThreshold = 0;
+    //warnThreshold 를 넘은 뒤에 로딩되는 엔티티는 읽기 전용(스냅샷 x)으로 로딩
+    private boolean autoReadOnly = false;
+}
@@ -0,0 +1,35 @@
+package study.datajpa.monitoring;
+
+import lombok.Getter;
+
+/**
+ * 스레드 별 SQL 실행 수, 로딩된 엔티티 수
+ */
+//하이버네이트 세션은 스레드에 묶여서 사용되므로 카운터도 스레드 별로 둔다.
+//값을 초기화하지 않고 계속 증가시키며, 측정하는 쪽에서 시작, 종료 시점의 차이를 사용한다.
+public final class QueryMetricsContext {
+    private static final ThreadLocal<Counters> counters = ThreadLocal.withInitial(Counters::new);
+
+    private QueryMetricsContext() {
+    }
+
+    public static Counters current() {
+        return counters.get();
+    }
+
+    @Getter
+    public static final class Counters {
+        private long statements;
+        private long selects;
+        private long entitiesLoaded;
+
+        void statementPrepared(boolean select) {
+            statements++;
+            if (select) selects++;
+        }
+
+        void entityLoaded() {
+            entitiesLoaded++;
+        }
+    }
+}
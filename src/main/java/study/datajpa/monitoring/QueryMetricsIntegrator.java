@@ -0,0 +1,66 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔티티 로딩 수와 flush 시간을 측정하는 하이버네이트 이벤트 리스너 등록
+ */
+//flush 는 기본 리스너 앞(prepend)에서 시작 시간을, 뒤(append)에서 종료 시간을 기록한다.
+@Component
+public class QueryMetricsIntegrator implements Integrator {
+    //flush 는 중첩되지 않으므로 스레드 당 시작 시간 하나만 보관
+    private static final ThreadLocal<long[]> flushStart = ThreadLocal.withInitial(() -> new long[]{-1});
+
+    private final Timer flushTimer;
+    private final Timer autoFlushTimer;
+
+    public QueryMetricsIntegrator(MeterRegistry registry) {
+        this.flushTimer = Timer.builder("hibernate.flush.duration").tag("type", "flush").register(registry);
+        this.autoFlushTimer = Timer.builder("hibernate.flush.duration").tag("type", "auto").register(registry);
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) this::onPostLoad);
+
+        registry.prependListeners(EventType.FLUSH, (FlushEventListener) event -> flushStarted());
+        registry.appendListeners(EventType.FLUSH, (FlushEventListener) event -> flushEnded(flushTimer));
+        registry.prependListeners(EventType.AUTO_FLUSH, (AutoFlushEventListener) event -> flushStarted());
+        registry.appendListeners(EventType.AUTO_FLUSH, (AutoFlushEventListener) event -> flushEnded(autoFlushTimer));
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private void onPostLoad(PostLoadEvent event) {
+        QueryMetricsContext.current().entityLoaded();
+    }
+
+    private void flushStarted() {
+        flushStart.get()[0] = System.nanoTime();
+    }
+
+    private void flushEnded(Timer timer) {
+        long[] start = flushStart.get();
+        if (start[0] >= 0) {
+            timer.record(System.nanoTime() - start[0], TimeUnit.NANOSECONDS);
+            start[0] = -1;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 쿼리 plan 캐시 적중률
+ */
+//hit, miss 횟수는 스프링 부트가 등록하는 hibernate.cache.query.plan 미터에 있고, 여기서는 비율만 계산해서 노출한다.
+//MeterBinder 로 등록하면 MeterRegistry -> EntityManagerFactory -> QueryMetricsIntegrator -> MeterRegistry 순환이 생기므로 일반 빈으로 등록한다.
+//EntityManagerFactory 는 조회할 때 unwrap 해서 deferred 모드의 백그라운드 생성을 막지 않는다.
+@Component
+public class QueryPlanCacheMetrics {
+    public QueryPlanCacheMetrics(MeterRegistry registry, EntityManagerFactory entityManagerFactory) {
+        Gauge.builder("hibernate.query.plan.cache.hit.ratio", entityManagerFactory, QueryPlanCacheMetrics::hitRatio)
+                .description("query plan cache hits / lookups since startup")
+                .register(registry);
+    }
+
+    static double hitRatio(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long hits = statistics.getQueryPlanCacheHitCount();
+        long lookups = hits + statistics.getQueryPlanCacheMissCount();
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,222 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+import study.datajpa.repository.Window;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 리포지토리 메소드 별 실행 시간, SQL 수, 조회 row 수, 로딩된 엔티티 수 기록
+ */
+//org.hibernate.SQL 로그 대신 카운터와 타이머만 사용한다. 메소드 별 미터는 처음 호출될 때 한번 만들어 재사용한다.
+//지연 로딩은 리포지토리 호출이 끝난 뒤 엔티티를 사용할 때 실행되므로 호출 단위로는 N+1 을 볼 수 없다.
+//트랜잭션 단위로 리포지토리 밖에서 실행된 select 수를 세어 리포지토리가 반환한 row 수와 비교한다. (open-in-view 를 쓰지 않으므로 지연 로딩은 트랜잭션 안에서만 일어난다)
+@Slf4j
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+    //N+1 은 반환된 row 마다 select 가 하나씩 더 실행되는 것, row 10개당 지연 로딩 select 가 하나 이상이면 의심한다.
+    //batch fetch(100)로 모아서 초기화하면 이보다 훨씬 적다.
+    private static final int ROWS_PER_LAZY_SELECT = 10;
+
+    private final MeterRegistry registry;
+    private final RepositoryMetricsProperties properties;
+    //상속받은 CRUD 메소드(findById, save 등)는 리포지토리가 달라도 같은 Method 이므로 리포지토리(프록시 클래스) 별로 나눈다.
+    private final Map<Class<?>, Map<Method, MethodMeters>> meters = new ConcurrentHashMap<>();
+    private final Object transactionKey = new Object();
+
+    public RepositoryMetricsAspect(MeterRegistry registry, RepositoryMetricsProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    @Around("target(org.springframework.data.repository.Repository)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!properties.isEnabled()) return joinPoint.proceed();
+
+        QueryMetricsContext.Counters counters = QueryMetricsContext.current();
+        TransactionQueries transaction = currentTransaction(counters);
+        if (transaction != null) transaction.depth++;
+        long statements = counters.getStatements();
+        long selects = counters.getSelects();
+        long entities = counters.getEntitiesLoaded();
+        long start = System.nanoTime();
+        boolean success = false;
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            success = true;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Class<?> repositoryClass = joinPoint.getTarget().getClass();
+            MethodMeters methodMeters = meters.computeIfAbsent(repositoryClass, type -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                            method -> new MethodMeters(repositoryName(repositoryClass), method.getName()));
+            long rows = rows(result);
+            methodMeters.record(elapsed, success, counters.getStatements() - statements,
+                    counters.getEntitiesLoaded() - entities, rows);
+            if (transaction != null && --transaction.depth == 0) {
+                transaction.called(methodMeters, counters.getSelects() - selects, rows);
+            }
+        }
+    }
+
+    //트랜잭션에서 처음 호출될 때 등록, 트랜잭션이 없으면 null (호출 단위로만 확인)
+    private TransactionQueries currentTransaction(QueryMetricsContext.Counters counters) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        TransactionQueries transaction = (TransactionQueries) TransactionSynchronizationManager.getResource(transactionKey);
+        if (transaction == null) {
+            transaction = new TransactionQueries(counters);
+            TransactionSynchronizationManager.bindResource(transactionKey, transaction);
+            TransactionSynchronizationManager.registerSynchronization(transaction);
+        }
+        return transaction;
+    }
+
+    private String repositoryName(Class<?> proxyClass) {
+        for (Class<?> type : ClassUtils.getAllInterfacesForClass(proxyClass)) {
+            if (Repository.class.isAssignableFrom(type) && !type.getName().startsWith("org.springframework.")) {
+                return type.getSimpleName();
+            }
+        }
+        return proxyClass.getSimpleName();
+    }
+
+    //반환된 row 수, 컬렉션, 페이지는 원소 수, 단건은 1
+    private long rows(Object result) {
+        if (result == null || result instanceof Number || result instanceof Boolean) return 0;
+        if (result instanceof Collection) return ((Collection<?>) result).size();
+        if (result instanceof Slice) return ((Slice<?>) result).getNumberOfElements();
+        if (result instanceof Window) return ((Window<?>) result).getContent().size();
+        if (result instanceof Optional) return ((Optional<?>) result).isPresent() ? 1 : 0;
+        return 1;
+    }
+
+    //트랜잭션 동안 리포지토리 호출(중첩 호출은 바깥 호출만)이 실행한 select 수와 반환한 row 수
+    //트랜잭션이 끝날 때 전체 select 수에서 빼면 리포지토리 밖, 즉 지연 로딩으로 실행된 select 수가 된다.
+    private class TransactionQueries implements TransactionSynchronization {
+        private final QueryMetricsContext.Counters counters;
+        private final long selectsAtStart;
+        private int depth;
+        private long repositorySelects;
+        private long suspendedAt;
+        private long rows;
+        private MethodMeters largest;
+        private long largestRows = -1;
+
+        TransactionQueries(QueryMetricsContext.Counters counters) {
+            this.counters = counters;
+            this.selectsAtStart = counters.getSelects();
+        }
+
+        void called(MethodMeters methodMeters, long selects, long rowCount) {
+            repositorySelects += selects;
+            rows += rowCount;
+            if (rowCount > largestRows) {
+                largest = methodMeters;
+                largestRows = rowCount;
+            }
+        }
+
+        //REQUIRES_NEW 로 잠시 멈춘 동안 실행된 select 는 안쪽 트랜잭션의 것이므로 리포지토리 select 와 같이 뺀다.
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(transactionKey);
+            suspendedAt = counters.getSelects();
+        }
+
+        @Override
+        public void resume() {
+            repositorySelects += counters.getSelects() - suspendedAt;
+            TransactionSynchronizationManager.bindResource(transactionKey, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(transactionKey);
+            long lazySelects = counters.getSelects() - selectsAtStart - repositorySelects;
+            if (largest != null && lazySelects > properties.getMaxStatementsPerCall()
+                    && lazySelects * ROWS_PER_LAZY_SELECT >= rows) {
+                largest.nPlusOneInTransaction(lazySelects, rows);
+            }
+        }
+    }
+
+    private class MethodMeters {
+        private final String repository;
+        private final String method;
+        private final Timer success;
+        private final Timer error;
+        private final DistributionSummary statements;
+        private final DistributionSummary entities;
+        private final DistributionSummary rows;
+        private final Counter slow;
+        private final Counter nPlusOne;
+        private final Counter nPlusOneInTransaction;
+
+        MethodMeters(String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+            this.success = Timer.builder("repository.invocations")
+                    .tags("repository", repository, "method", method, "outcome", "success").register(registry);
+            this.error = Timer.builder("repository.invocations")
+                    .tags("repository", repository, "method", method, "outcome", "error").register(registry);
+            this.statements = DistributionSummary.builder("repository.statements")
+                    .tags("repository", repository, "method", method).register(registry);
+            this.entities = DistributionSummary.builder("repository.entities.loaded")
+                    .tags("repository", repository, "method", method).register(registry);
+            this.rows = DistributionSummary.builder("repository.rows")
+                    .tags("repository", repository, "method", method).register(registry);
+            this.slow = Counter.builder("repository.slow.invocations")
+                    .tags("repository", repository, "method", method).register(registry);
+            this.nPlusOne = Counter.builder("repository.nplusone.suspected")
+                    .tags("repository", repository, "method", method, "scope", "call").register(registry);
+            this.nPlusOneInTransaction = Counter.builder("repository.nplusone.suspected")
+                    .tags("repository", repository, "method", method, "scope", "transaction").register(registry);
+        }
+
+        void record(long elapsedNanos, boolean succeeded, long statementCount, long entityCount, long rowCount) {
+            (succeeded ? success : error).record(elapsedNanos, TimeUnit.NANOSECONDS);
+            statements.record(statementCount);
+            entities.record(entityCount);
+            rows.record(rowCount);
+
+            if (elapsedNanos > properties.getSlowQueryThreshold().toNanos()) {
+                slow.increment();
+                log.warn("slow repository call {}.{} took {}ms ({} statements)",
+                        repository, method, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), statementCount);
+            }
+            if (statementCount > properties.getMaxStatementsPerCall()) {
+                nPlusOne.increment();
+                log.warn("possible N+1 in {}.{}: {} statements for {} rows", repository, method, statementCount, rowCount);
+            }
+        }
+
+        //트랜잭션에서 가장 많은 row 를 반환한 메소드에 기록
+        void nPlusOneInTransaction(long lazySelects, long rowCount) {
+            nPlusOneInTransaction.increment();
+            log.warn("possible N+1 after {}.{}: {} lazy-loading selects in the transaction for {} rows returned by repositories",
+                    repository, method, lazySelects, rowCount);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package study.datajpa.monitoring;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({RepositoryMetricsProperties.class, PersistenceContextGuardProperties.class})
+public class RepositoryMetricsConfig {
+}
@@ -0,0 +1,17 @@
+package study.datajpa.monitoring;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.metrics")
+public class RepositoryMetricsProperties {
+    private boolean enabled = true;
+    //이 시간보다 오래 걸린 리포지토리 호출은 slow 로 기록
+    private Duration slowQueryThreshold = Duration.ofMillis(200);
+    //리포지토리 메소드 한번에, 또는 한 트랜잭션에서 리포지토리 밖(지연 로딩)에서 이 수보다 많은 SQL 이 실행되면 N+1 로 의심
+    private int maxStatementsPerCall = 10;
+}
@@ -0,0 +1,42 @@
+package study.datajpa.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 파일 sink, 메시지를 한 줄에 하나씩 JSON 으로 추가(NDJSON)
+ */
+public class FileOutboxSink implements OutboxSink {
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    public FileOutboxSink(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean publish(List<OutboxMessage> messages) {
+        try {
+            List<String> lines = new ArrayList<>(messages.size());
+            for (OutboxMessage message : messages) {
+                lines.add(objectMapper.writeValueAsString(message));
+            }
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Files.write(path, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return true;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package study.datajpa.outbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 메모리 큐 sink, 테스트용 (스케줄러 릴레이와 함께 쓸 수 없다)
+ */
+//큐가 가득 차면 배치를 받지 않아서 소비자가 느릴 때 릴레이가 멈추도록 한다.
+public class InMemoryOutboxSink implements OutboxSink {
+    private final BlockingQueue<OutboxMessage> queue;
+
+    public InMemoryOutboxSink(int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    //릴레이 스레드 하나만 호출하므로 남은 공간 확인 후 추가해도 넘치지 않는다.
+    @Override
+    public boolean publish(List<OutboxMessage> messages) {
+        if (queue.remainingCapacity() < messages.size()) return false;
+        queue.addAll(messages);
+        return true;
+    }
+
+    public List<OutboxMessage> drain() {
+        List<OutboxMessage> messages = new ArrayList<>();
+        queue.drainTo(messages);
+        return messages;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,26 @@
+package study.datajpa.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Paths;
+
+//다른 sink(메시지 브로커 등)를 쓰려면 OutboxSink 빈을 @Primary 로 등록한다.
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxConfig {
+
+    @Bean
+    public OutboxSink outboxSink(OutboxProperties properties, ObjectMapper objectMapper) {
+        if (StringUtils.hasText(properties.getFile())) {
+            return new FileOutboxSink(Paths.get(properties.getFile()), objectMapper);
+        }
+        //메모리 sink 는 테스트에서 직접 꺼내 확인하는 용도, 스케줄러 릴레이와 함께 쓰면 기동을 막는다. (OutboxRelay)
+        return new InMemoryOutboxSink(properties.getMemoryCapacity());
+    }
+}
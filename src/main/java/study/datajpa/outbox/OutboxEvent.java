@@ -0,0 +1,47 @@
+package study.datajpa.outbox;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 트랜잭셔널 아웃박스
+ */
+//엔티티가 저장, 수정, 삭제될 때 같은 트랜잭션 안에서 OutboxWriter 가 JDBC 배치로 insert 한다. (엔티티로 저장하지 않는다)
+//OutboxRelay 가 publishedAt 이 null 인 row 를 id 순서로 읽어 OutboxSink 로 전달하고 publishedAt 을 채운다.
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_published_at", columnList = "published_at"))
+@Getter @ToString(of = {"id", "aggregateType", "aggregateId", "eventType"})
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OutboxEvent {
+    //IDENTITY 라도 insert 는 OutboxWriter 의 JDBC 배치로 하므로 배치가 끊기지 않는다.
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "outbox_event_id")
+    private Long id;
+
+    @Column(nullable = false)
+    private String aggregateType;
+
+    @Column(nullable = false)
+    private String aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxEventType eventType;
+
+    //변경 후 상태(삭제는 삭제 전 상태)를 JSON 으로 저장
+    @Column(length = 4000)
+    private String payload;
+
+    private String actor;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    private LocalDateTime publishedAt;
+}
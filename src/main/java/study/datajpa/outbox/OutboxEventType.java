@@ -0,0 +1,5 @@
+package study.datajpa.outbox;
+
+public enum OutboxEventType {
+    CREATED, UPDATED, DELETED
+}
@@ -0,0 +1,27 @@
+package study.datajpa.outbox;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * OutboxSink 로 전달되는 메시지
+ */
+//릴레이는 at-least-once 로 전달하므로 sink 는 (shard, id) 로 중복을 걸러야 한다.
+//샤딩을 사용하면 아웃박스 id 는 샤드 안에서만 유일하다. 샤딩을 사용하지 않으면 shard 는 항상 0
+@Value
+public class OutboxMessage {
+    int shard;
+    Long id;
+    String aggregateType;
+    String aggregateId;
+    OutboxEventType eventType;
+    String payload;
+    String actor;
+    LocalDateTime occurredAt;
+
+    public static OutboxMessage from(int shard, OutboxEvent event) {
+        return new OutboxMessage(shard, event.getId(), event.getAggregateType(), event.getAggregateId(), event.getEventType(),
+                event.getPayload(), event.getActor(), event.getOccurredAt());
+    }
+}
@@ -0,0 +1,27 @@
+package study.datajpa.outbox;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "datajpa.outbox")
+public class OutboxProperties {
+    //엔티티 변경 시 아웃박스 기록
+    private boolean enabled = true;
+    //스케줄러로 릴레이 실행, 꺼져 있으면 OutboxRelay.relay() 를 직접 호출해야 한다.
+    //켜려면 file 또는 OutboxSink 빈이 필요하다. (메모리 sink 는 아무도 꺼내지 않아 가득 차면 릴레이가 멈추고 outbox_event 가 계속 쌓인다)
+    private boolean relayEnabled = false;
+    private int batchSize = 100;
+    //한번 실행할 때 최대 배치 수, 나머지는 다음 실행에서 처리
+    private int maxBatchesPerRun = 10;
+    //sink 가 받지 못하면 1초부터 두배씩 maxBackoff 까지 쉰다.
+    private Duration maxBackoff = Duration.ofMinutes(1);
+    //발행된 이벤트 보관 기간
+    private Duration retention = Duration.ofDays(1);
+    //지정하면 FileOutboxSink, 아니면 InMemoryOutboxSink (릴레이를 직접 호출하는 테스트용)
+    private String file;
+    private int memoryCapacity = 10_000;
+}
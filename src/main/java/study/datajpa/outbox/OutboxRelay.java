@@ -0,0 +1,120 @@
+package study.datajpa.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.datasource.ShardContext;
+import study.datajpa.datasource.ShardRoutingDataSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 아웃박스 이벤트를 배치로 읽어 OutboxSink 로 전달
+ */
+//배치마다 새 트랜잭션에서 (조회 -> sink 전달 -> publishedAt 기록) 을 실행한다.
+//sink 전달 후 커밋 전에 실패하면 같은 배치가 다시 전달되므로 전달 보장은 at-least-once.
+//sink 가 배치를 받지 못하거나(false) 예외가 나면 1초부터 두배씩 maxBackoff 까지 쉬었다가 다시 시도한다.
+//애플리케이션 인스턴스가 하나라고 가정, 여러 인스턴스에서 실행하려면 조회 시 row 락(skip locked)이 필요하다.
+//샤딩을 사용하면 아웃박스는 변경된 엔티티와 같은 샤드에 기록되므로 샤드 마다 순서대로 전달, 정리한다. (이벤트 id 는 샤드 안에서만 유일하므로 메시지에 샤드를 함께 싣는다)
+@Slf4j
+@Component
+public class OutboxRelay {
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink sink;
+    private final OutboxProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<ShardRoutingDataSource> routingDataSource;
+    private long backoffMillis;
+    private volatile long resumeAt;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxSink sink, OutboxProperties properties,
+                       PlatformTransactionManager transactionManager, ObjectProvider<ShardRoutingDataSource> routingDataSource) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sink;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.routingDataSource = routingDataSource;
+        if (properties.isRelayEnabled() && sink instanceof InMemoryOutboxSink) {
+            throw new IllegalStateException("datajpa.outbox.relay-enabled requires datajpa.outbox.file or an OutboxSink bean;"
+                    + " nothing drains the in-memory sink");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${datajpa.outbox.relay-interval-millis:1000}")
+    public void relayScheduled() {
+        if (!properties.isRelayEnabled() || System.currentTimeMillis() < resumeAt) return;
+        relay();
+    }
+
+    @Scheduled(fixedDelayString = "${datajpa.outbox.cleanup-interval-millis:3600000}")
+    public void purgePublished() {
+        if (!properties.isRelayEnabled()) return;
+        LocalDateTime before = LocalDateTime.now().minus(properties.getRetention());
+        int deleted = ShardContext.onEachShard(routingDataSource.getIfAvailable(), () ->
+                transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(before)))
+                .stream().mapToInt(Integer::intValue).sum();
+        if (deleted > 0) log.info("purged {} published outbox events", deleted);
+    }
+
+    //전달한 이벤트 수를 반환, 스케줄러와 직접 호출이 겹치지 않도록 동기화
+    //한 샤드에서 실패하면 나머지 샤드도 backoff 가 끝난 뒤 다음 실행에서 전달한다.
+    public synchronized int relay() {
+        int[] relayed = new int[1];
+        ShardRoutingDataSource shards = routingDataSource.getIfAvailable();
+        int shardCount = shards == null ? 1 : shards.getShardCount();
+        for (int shard = 0; shard < shardCount; shard++) {
+            boolean completed = shards == null ? relayCurrentShard(relayed) : ShardContext.call(shard, () -> relayCurrentShard(relayed));
+            if (!completed) return relayed[0];
+        }
+        backoffMillis = 0;
+        return relayed[0];
+    }
+
+    //현재 샤드의 아웃박스를 전달하고 전달한 수를 relayed 에 더한다. 실패해서 backoff 했으면 false
+    private boolean relayCurrentShard(int[] relayed) {
+        try {
+            for (int i = 0; i < properties.getMaxBatchesPerRun(); i++) {
+                int sent = transactionTemplate.execute(status -> relayBatch());
+                if (sent < 0) {
+                    backOff("sink rejected batch");
+                    return false;
+                }
+                relayed[0] += sent;
+                if (sent < properties.getBatchSize()) break;
+            }
+        } catch (RuntimeException e) {
+            log.warn("outbox relay failed", e);
+            backOff(e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    //-1 이면 sink 가 받지 않은 것, 트랜잭션은 변경 없이 커밋된다.
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.findByPublishedAtIsNullOrderByIdAsc(PageRequest.of(0, properties.getBatchSize()));
+        if (batch.isEmpty()) return 0;
+        Integer current = ShardContext.current();
+        int shard = current == null ? 0 : current;
+        List<OutboxMessage> messages = batch.stream().map(event -> OutboxMessage.from(shard, event)).collect(Collectors.toList());
+        if (!sink.publish(messages)) return -1;
+        outboxEventRepository.markPublished(messages.stream().map(OutboxMessage::getId).collect(Collectors.toList()), LocalDateTime.now());
+        return batch.size();
+    }
+
+    private void backOff(String reason) {
+        backoffMillis = backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(backoffMillis * 2, properties.getMaxBackoff().toMillis());
+        resumeAt = System.currentTimeMillis() + backoffMillis;
+        log.warn("outbox relay paused for {}ms: {}", backoffMillis, reason);
+    }
+}
@@ -0,0 +1,12 @@
+package study.datajpa.outbox;
+
+import java.util.List;
+
+/**
+ * 아웃박스 이벤트를 받아가는 곳 (메시지 브로커, 검색 인덱스 등)
+ */
+//false 를 반환하면 지금은 받을 수 없다는 뜻으로, 릴레이는 배치를 발행하지 않은 상태로 두고 잠시 쉬었다가 다시 시도한다. (back-pressure)
+//예외를 던져도 같은 방식으로 재시도한다.
+public interface OutboxSink {
+    boolean publish(List<OutboxMessage> messages);
+}
@@ -0,0 +1,117 @@
+package study.datajpa.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+import study.datajpa.audit.AuditorHolder;
+import study.datajpa.repository.support.SessionBatches;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 엔티티 변경을 같은 트랜잭션 안에서 아웃박스 테이블에 기록
+ */
+//post insert, update, delete 이벤트에서 변경 내용을 세션 별로 모아두고 커밋 직전(before transaction completion)에
+//현재 트랜잭션의 커넥션으로 한번에 JDBC 배치 insert 한다. (SessionBatches) 변경과 아웃박스 기록이 함께 커밋, 롤백된다.
+//JPQL 벌크 연산(bulkAgePlus, ChunkedBulkExecutor)은 엔티티 이벤트가 발생하지 않으므로 기록되지 않는다.
+@Component
+public class OutboxWriter implements Integrator, PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private static final String INSERT_SQL = "insert into outbox_event "
+            + "(aggregate_type, aggregate_id, event_type, payload, actor, occurred_at) values (?, ?, ?, ?, ?, ?)";
+
+    private final SessionBatches<SessionBatches.InsertBatch> batches = new SessionBatches<>(() -> new SessionBatches.InsertBatch(INSERT_SQL));
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    public OutboxWriter(ObjectMapper objectMapper, OutboxProperties properties) {
+        this.objectMapper = objectMapper;
+        this.enabled = properties.isEnabled();
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        if (!enabled) return;
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        record(event.getSession(), event.getPersister(), event.getId(), event.getState(), OutboxEventType.CREATED);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        record(event.getSession(), event.getPersister(), event.getId(), event.getState(), OutboxEventType.UPDATED);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        record(event.getSession(), event.getPersister(), event.getId(), event.getDeletedState(), OutboxEventType.DELETED);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void record(EventSource session, EntityPersister persister, Serializable id, Object[] state, OutboxEventType type) {
+        if (persister.getMappedClass() == OutboxEvent.class) return;
+        batches.get(session).add(
+                persister.getMappedClass().getSimpleName(),
+                String.valueOf(id),
+                type.name(),
+                payload(session, persister, id, state),
+                AuditorHolder.current().orElse(AuditorHolder.SYSTEM),
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    //속성 값을 JSON 으로, 연관 엔티티는 id 만, 컬렉션은 제외
+    private String payload(EventSource session, EntityPersister persister, Serializable id, Object[] state) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put(persister.getIdentifierPropertyName(), id);
+        String[] names = persister.getPropertyNames();
+        Type[] types = persister.getPropertyTypes();
+        for (int i = 0; i < names.length; i++) {
+            Object value = state == null ? null : state[i];
+            if (types[i].isCollectionType()) continue;
+            if (types[i].isEntityType()) {
+                values.put(names[i] + "Id", value == null ? null : associationId(session, (EntityType) types[i], value));
+            } else {
+                values.put(names[i], value);
+            }
+        }
+        try {
+            return objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("failed to serialize outbox payload of " + persister.getEntityName(), e);
+        }
+    }
+
+    private Object associationId(EventSource session, EntityType type, Object value) {
+        if (value instanceof HibernateProxy) {
+            return ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+        }
+        return session.getFactory().getMetamodel().entityPersister(type.getAssociatedEntityName()).getIdentifier(value, session);
+    }
+}
@@ -0,0 +1,17 @@
+package study.datajpa.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * 대량 insert 용 사용자 정의 리포지토리
+ */
+//Member, Team 리포지토리가 함께 상속받는 제네릭 인터페이스, 구현체는 BatchInsertRepositoryImpl 하나를 공유한다.
+public interface BatchInsertRepository<T> {
+    //hibernate.jdbc.batch_size 단위로 flush 하고 저장한 엔티티를 준영속으로 만든다.
+    //반환된 엔티티들은 준영속 상태, 호출한 쪽의 영속성 컨텍스트에 있던 엔티티는 그대로 남는다.
+    //새 엔티티만 저장한다. id 가 있는 엔티티가 섞여 있으면 아무것도 저장하지 않고 IllegalArgumentException
+    @Transactional
+    <S extends T> List<S> saveAllBatched(Iterable<S> entities);
+}
@@ -0,0 +1,53 @@
+package study.datajpa.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchInsertRepositoryImpl<T> implements BatchInsertRepository<T> {
+    private final EntityManager em;
+    private final int batchSize;
+
+    public BatchInsertRepositoryImpl(EntityManager em,
+                                     @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.em = em;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllBatched(Iterable<S> entities) {
+        //persist 는 id 가 있는 엔티티(이미 저장된 엔티티)에 예외가 나므로 중간까지 저장되기 전에 먼저 확인한다.
+        List<S> result = new ArrayList<>();
+        PersistenceUnitUtil persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        for (S entity : entities) {
+            Object id = persistenceUnitUtil.getIdentifier(entity);
+            if (id != null) {
+                throw new IllegalArgumentException("saveAllBatched only inserts new entities, use saveAll to update "
+                        + entity.getClass().getSimpleName() + " id=" + id);
+            }
+            result.add(entity);
+        }
+
+        //saveAll 은 엔티티가 모두 영속성 컨텍스트에 쌓인다.
+        //batchSize 마다 flush 로 insert 를 한번에 보내고, 이번 배치의 엔티티만 준영속으로 만들어 스냅샷을 버린다.
+        //em.clear() 는 호출한 쪽 트랜잭션이 들고 있던 엔티티까지 비우므로 사용하지 않는다.
+        int from = 0;
+        for (int i = 0; i < result.size(); i++) {
+            em.persist(result.get(i));
+            if ((i + 1) % batchSize == 0) {
+                flushAndDetach(result.subList(from, i + 1));
+                from = i + 1;
+            }
+        }
+        flushAndDetach(result.subList(from, result.size()));
+        return result;
+    }
+
+    private void flushAndDetach(List<?> batch) {
+        em.flush();
+        batch.forEach(em::detach);
+    }
+}
@@ -0,0 +1,13 @@
+package study.datajpa.repository;
+
+/**
+ * Page 조회 시 totalCount 를 구하는 방식
+ */
+public enum CountMode {
+    //매번 count 쿼리 실행 (마지막 페이지처럼 content 로 알 수 있으면 생략)
+    EXACT,
+    //조건별 count 를 짧은 시간(TTL) 동안 캐시, 그 사이 추가, 삭제된 row 는 반영되지 않는다.
+    CACHED,
+    //count 쿼리를 실행하지 않는다. 캐시된 값이 있으면 TTL 이 지났어도 사용하고, 없으면 현재 페이지까지의 하한값을 사용
+    APPROXIMATE
+}
@@ -1,22 +1,36 @@
 package study.datajpa.repository;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.config.RepositoryAsyncConfig;
 import study.datajpa.domain.Member;
 import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSummary;
+import study.datajpa.dto.MemberSummaryDto;
 
 import javax.persistence.LockModeType;
 import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
-public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
+//조회 메소드는 읽기 전용 트랜잭션으로 실행, replica 라우팅을 사용하면 replica 로 전달된다.
+//변경 메소드(@Modifying)는 메소드에 @Transactional 을 따로 붙인다.
+@Transactional(readOnly = true)
+public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, BatchInsertRepository<Member> {
     /**
      * 메소드 이름으로 쿼리 생성,  파라미터 바인딩은 위치기반
      */
+    //쿼리 캐시, 파라미터 별 결과(id 목록)를 캐시하고 member 테이블이 변경되면 무효화된다.
+    @QueryHints(value = @QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Member> findByUsername(String username);
     List<Member> findByUsernameAndAgeGreaterThan(String username, int age);
     //List<Member> findTop3By();   //Limit, 조회한 것중 3개
@@ -40,11 +54,45 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name)from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
+    //API 응답용, team 이 없는 회원도 포함하도록 left join
+    @Query(value = "select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t",
+            countQuery = "select count(m) from Member m")
+    Page<MemberDto> findMemberDtoPage(Pageable pageable);
+
+    //NDJSON 스트리밍용 keyset 조회, lastId 다음부터 size 개씩
+    @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t" +
+            " where m.id > :lastId order by m.id asc")
+    List<MemberDto> findMemberDtoAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    //컬렉션 파라미터 바인딩, in 절 파라미터 수 마다 다른 SQL 이 되므로 in_clause_parameter_padding 으로 개수를 맞춘다.
+    @Query("select m from Member m where m.username in :usernames")
+    List<Member> findByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Projections, 엔티티 대신 필요한 컬럼만 조회
+     */
+    List<MemberSummary> findSummaryByUsername(String username);     //인터페이스 기반
+    <T> List<T> findByUsername(String username, Class<T> type);     //동적 Projection, MemberSummaryDto.class 등을 넘긴다.
+    Page<MemberSummary> findSummaryPageByUsername(String username, Pageable pageable);
+    Slice<MemberSummary> findSummarySliceByUsername(String username, Pageable pageable);
+
+    //like 검색, 'x%' 는 username 인덱스 range scan, '%x%' 는 full scan (UsernameIndex 와 비교용)
+    List<MemberSummary> findSummaryByUsernameStartingWith(String prefix, Pageable pageable);
+    List<MemberSummary> findSummaryByUsernameContaining(String infix, Pageable pageable);
+
+    //@Query 에서는 select 절의 alias 가 getter 이름과 맞아야 한다.
+    @Query("select m.id as id, m.username as username, m.age as age from Member m")
+    List<MemberSummary> findMemberSummaries();
+
+    @Query("select new study.datajpa.dto.MemberSummaryDto(m.id, m.username, m.age) from Member m")
+    List<MemberSummaryDto> findMemberSummaryDtos();
+
     /**
      * 반환 타입
      */
     List<Member> findListByUsername(String username);   //컬렉션
     Member findMemberByUsername(String username);   //단건
+    @QueryHints(value = @QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Member> findOptionalByUsername(String username);   //단건 Optional
 
     /**
@@ -62,11 +110,72 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query(value = "select m from Member m join m.team", countQuery = "select count(m) from Member m")
     Page<Member> findByAge(int age, Pageable pageable);
 
+    /**
+     * Keyset(seek) 페이징
+     */
+    //offset 페이징은 앞 페이지의 row 들을 모두 읽고 버리기 때문에 페이지가 깊어질수록 느려진다.
+    //마지막으로 읽은 (정렬키, member_id) 다음부터 읽으면 깊이와 상관없이 바로 다음 페이지를 찾을 수 있다.
+    @EntityGraph(attributePaths = {"team"})
+    @Query("select m from Member m where m.username = :username and m.id > :lastId order by m.id asc")
+    List<Member> findKeysetByUsername(@Param("username") String username, @Param("lastId") Long lastId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"team"})
+    @Query("select m from Member m where m.age > :lastAge or (m.age = :lastAge and m.id > :lastId) order by m.age asc, m.id asc")
+    List<Member> findKeysetByAge(@Param("lastAge") int lastAge, @Param("lastId") Long lastId, Pageable pageable);
+
+    //token 이 null 이면 첫 페이지, 이후에는 이전 Window 의 nextToken 을 넘긴다. size 가 1 보다 작으면 IllegalArgumentException
+    default Window<Member> findWindowByUsername(String username, String token, int size) {
+        Window.checkSize(size);
+        String[] keys = Window.decode(token, 1);
+        Long lastId = keys == null ? 0L : Long.valueOf(keys[0]);
+        List<Member> fetched = findKeysetByUsername(username, lastId, PageRequest.of(0, size + 1));
+        return Window.of(fetched, size, m -> new Object[]{m.getId()});
+    }
+
+    default Window<Member> findWindowByAge(String token, int size) {
+        Window.checkSize(size);
+        String[] keys = Window.decode(token, 2);
+        int lastAge = keys == null ? Integer.MIN_VALUE : Integer.parseInt(keys[0]);
+        Long lastId = keys == null ? 0L : Long.valueOf(keys[1]);
+        List<Member> fetched = findKeysetByAge(lastAge, lastId, PageRequest.of(0, size + 1));
+        return Window.of(fetched, size, m -> new Object[]{m.getAge(), m.getId()});
+    }
+
+    /**
+     * 증분 동기화, (lastModifiedDate, id) 워터마크 이후 변경분
+     */
+    //until 은 아직 커밋되지 않은 트랜잭션의 변경을 건너뛰지 않도록 현재 시각보다 조금 이전으로 잡는다. (IncrementalSync)
+    @EntityGraph(attributePaths = {"team"})
+    @Query("select m from Member m where (m.lastModifiedDate > :since or (m.lastModifiedDate = :since and m.id > :lastId))" +
+            " and m.lastModifiedDate <= :until order by m.lastModifiedDate asc, m.id asc")
+    List<Member> findChangedSince(@Param("since") LocalDateTime since, @Param("lastId") Long lastId,
+                                  @Param("until") LocalDateTime until, Pageable pageable);
+
+    /**
+     * 비동기 조회
+     */
+    //CompletableFuture 로 반환, 서로 독립적인 조회를 동시에 실행할 수 있다.
+    //다른 스레드의 트랜잭션에서 조회되므로 반환된 엔티티는 준영속 상태, 필요한 연관관계는 fetch join 으로 함께 가져온다.
+    @Async(RepositoryAsyncConfig.REPOSITORY_EXECUTOR)
+    @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
+    CompletableFuture<List<MemberDto>> findMemberDtoAsync();
+
+    @Async(RepositoryAsyncConfig.REPOSITORY_EXECUTOR)
+    @EntityGraph(attributePaths = {"team"})
+    CompletableFuture<Page<Member>> findAsyncByAge(int age, Pageable pageable);
+
+    @Async(RepositoryAsyncConfig.REPOSITORY_EXECUTOR)
+    CompletableFuture<List<Member>> findAsyncByUsername(String username);
+
     /**
      * 벌크성 수정 쿼리
      */
+    //대상 row 가 많으면 락을 오래 잡으므로 ChunkedBulkExecutor 로 PK 범위를 나눠 실행한다.
+    //벌크 연산은 2차 캐시의 Member region 과 member 테이블의 쿼리 캐시를 하이버네이트가 무효화한다.
+    @Transactional
     @Modifying(clearAutomatically = true)  //조회쿼리가 아닌 INSERT, UPDATE, DELETE 등, 변경, 삭제 쿼리메소드를 실행할 때 필요
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
+    //벌크 연산은 version, lastModifiedDate 를 직접 올려야 한다. (lastModifiedDate 는 증분 동기화 워터마크)
+    @Query("update Member m set m.age = m.age + 1, m.version = m.version + 1, m.lastModifiedDate = current_timestamp where m.age >= :age")
     int bulkAgePlus(@Param("age") int age);     //update return 값 으로는, update 된 row 수가 나옴
 
     /**
@@ -79,6 +188,9 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @EntityGraph(attributePaths = {"team"})
     List<Member> findEntityGraphByUsername(String username);      //메소드 이름 규칙도 fetch join 가능
 
+    @EntityGraph(attributePaths = {"team"})
+    Optional<Member> findWithTeamById(Long id);
+
     @EntityGraph(attributePaths = {"team"})        //@Query도 EntityGraph 사용 가능
     @Query("select m from Member m")
     List<Member> findMembers();
@@ -92,7 +204,12 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @QueryHints(value = @QueryHint(name = "org.hibernate.readOnly", value = "true"))
     Member findReadOnlyByUsername(String username);
 
+    //비관적 락은 트랜잭션이 끝날 때 까지 row 락을 잡고 있어 경합이 심하면 쓰기가 직렬화된다.
+    //충돌이 드문 경우에는 BaseEntity 의 @Version 과 OptimisticRetryExecutor 로 재시도하는 방식이 처리량이 더 높다.
     //DB의 select for update 처럼 select한 필드들로의 접근을 제한하는 기능을 jpa 에서 쉽게 제공해주는 annotation
+    //인터페이스의 readOnly 트랜잭션이면 replica 의 읽기 전용 커넥션으로 가고, 호출한 쪽 트랜잭션이 없으면 조회 직후 커밋되어 락이 바로 풀린다.
+    //읽기-쓰기 트랜잭션으로 primary 에서 실행한다. (락은 호출한 쪽 트랜잭션 안에서 호출해야 의미가 있다)
+    @Transactional
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Member findLockByUsername(String username);
 }
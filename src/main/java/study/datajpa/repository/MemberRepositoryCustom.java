@@ -1,9 +1,35 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.domain.Member;
+import study.datajpa.dto.MemberReadModel;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface MemberRepositoryCustom {
     List<Member> findMemberCustom();
+
+    //전체 회원을 chunkSize 단위로 나눠 전달, 하나의 chunk 를 처리하고 나면 그 chunk 로 올라온 엔티티만 준영속으로 만든다.
+    //호출 전부터 영속성 컨텍스트에 있던 엔티티와 그 변경은 그대로 남는다.
+    //forward-only 커서로 읽기 때문에 결과 전체를 메모리에 올리지 않는다. 반환값은 전달한 회원 수
+    @Transactional(readOnly = true)
+    long forEachMemberChunk(int fetchSize, int chunkSize, Consumer<List<Member>> chunkConsumer);
+
+    //StatelessSession 으로 읽기, 영속성 컨텍스트와 스냅샷이 없어 전체를 읽어도 힙 사용량이 늘지 않는다.
+    //team 은 fetch join 으로 함께 읽는다. 전달받은 엔티티는 변경 감지, 지연 로딩이 되지 않는다.
+    @Transactional(readOnly = true)
+    long forEachMemberStateless(int fetchSize, Consumer<Member> memberConsumer);
+
+    //countMode 로 count 쿼리 실행 여부를 호출할 때마다 고를 수 있는 페이징
+    Page<Member> findPageByUsername(String username, Pageable pageable, CountMode countMode);
+    Page<Member> findPageByAge(int age, Pageable pageable, CountMode countMode);
+
+    //JDBC 로 바로 조회하는 빠른 경로, findByUsername / findOptionalByUsername 과 같은 결과를 읽기 모델로 반환한다.
+    //JPQL 변환, 엔티티 hydrate, 영속성 컨텍스트 등록을 모두 생략하므로 자주 호출되는 단순 조회에만 사용한다.
+    List<MemberReadModel> findReadModelsByUsername(String username);
+    Optional<MemberReadModel> findReadModelByUsername(String username);
 }
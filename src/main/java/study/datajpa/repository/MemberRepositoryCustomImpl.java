@@ -1,10 +1,35 @@
 package study.datajpa.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import study.datajpa.domain.Member;
+import study.datajpa.dto.MemberReadModel;
+import study.datajpa.repository.support.TotalCountCache;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 /**
  * 사용자 정의 리포지토리 구현
@@ -17,11 +42,144 @@ public class MemberRepositoryCustomImpl implements MemberRepositoryCustom{
     //스프링 데이터 JPA 가 상속받는 사용자 정의 인터페이스의 이름 + Impl 로 구현클래스의 이름을 정한다.
     //그래야만 스프링 데이터 JPA 가 사용자 정의 인터페이스의 메소드를 콜 할 경우, 구현체를 인식할 수 있다.
     //== 사용자 정의 리포지토리 구현의 유일한 규칙
+    //SQL 문자열을 상수로 고정해야 드라이버의 prepared statement 캐시(H2 QUERY_CACHE_SIZE, MySQL cachePrepStmts 등)에서 재사용된다.
+    private static final String READ_MODEL_BY_USERNAME_SQL =
+            "select member_id, username, age, team_id from member where username = ?";
+    private static final RowMapper<MemberReadModel> READ_MODEL_MAPPER = (rs, rowNum) -> {
+        long teamId = rs.getLong("team_id");
+        return new MemberReadModel(rs.getLong("member_id"), rs.getString("username"), rs.getInt("age"),
+                rs.wasNull() ? null : teamId);
+    };
+
     private final EntityManager em;
+    private final TotalCountCache totalCountCache;
+    private final JdbcTemplate jdbcTemplate;
 
     @Override
     public List<Member> findMemberCustom() {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    @Override
+    public long forEachMemberChunk(int fetchSize, int chunkSize, Consumer<List<Member>> chunkConsumer) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+        //getResultList 는 모든 row 를 영속성 컨텍스트에 올린다.
+        //하이버네이트 ScrollableResults(FORWARD_ONLY) 로 JDBC 커서를 열고 fetchSize 만큼씩 DB 에서 가져온다.
+        Session session = em.unwrap(Session.class);
+        //호출한 쪽 트랜잭션에 참여하면 영속성 컨텍스트도 공유하므로, 시작 전에 있던 엔티티는 chunk 마다 비울 때 남겨둔다.
+        Set<EntityKey> callerKeys = new HashSet<>(session.getStatistics().getEntityKeys());
+        long count = 0;
+        try (ScrollableResults results = session.createQuery("select m from Member m order by m.id", Member.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)                  //스냅샷 저장 x
+                .setCacheMode(CacheMode.IGNORE)     //2차 캐시에 쌓지 않음
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            List<Member> chunk = new ArrayList<>(chunkSize);
+            while (results.next()) {
+                chunk.add((Member) results.get(0));
+                if (chunk.size() == chunkSize) {
+                    count += flushChunk(session, callerKeys, chunk, chunkConsumer);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                count += flushChunk(session, callerKeys, chunk, chunkConsumer);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long forEachMemberStateless(int fetchSize, Consumer<Member> memberConsumer) {
+        //현재 트랜잭션의 커넥션으로 StatelessSession 을 열어 같은 트랜잭션(같은 DB, replica 라우팅)에서 읽는다.
+        Session session = em.unwrap(Session.class);
+        return session.doReturningWork(connection -> {
+            long count = 0;
+            StatelessSession stateless = session.getSessionFactory().openStatelessSession(connection);
+            try (ScrollableResults results = stateless.createQuery("select m from Member m left join fetch m.team order by m.id", Member.class)
+                    .setFetchSize(fetchSize)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    memberConsumer.accept((Member) results.get(0));
+                    count++;
+                }
+            } finally {
+                stateless.close();
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public Page<Member> findPageByUsername(String username, Pageable pageable, CountMode countMode) {
+        return findPage("m.username = :value", username, "member.username:" + username, pageable, countMode);
+    }
+
+    @Override
+    public Page<Member> findPageByAge(int age, Pageable pageable, CountMode countMode) {
+        return findPage("m.age = :value", age, "member.age:" + age, pageable, countMode);
+    }
+
+    private Page<Member> findPage(String where, Object value, String countKey, Pageable pageable, CountMode countMode) {
+        String jpql = QueryUtils.applySorting("select m from Member m where " + where, pageable.getSort(), "m");
+        //APPROXIMATE 는 다음 페이지 유,무를 알기 위해 Slice 처럼 하나 더 조회한다.
+        int limit = countMode == CountMode.APPROXIMATE ? pageable.getPageSize() + 1 : pageable.getPageSize();
+        List<Member> fetched = em.createQuery(jpql, Member.class)
+                .setParameter("value", value)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(limit)
+                .getResultList();
+        LongSupplier count = () -> em.createQuery("select count(m) from Member m where " + where, Long.class)
+                .setParameter("value", value)
+                .getSingleResult();
+
+        //content 가 page size 보다 작으면 count 를 실행하지 않고 offset + content 크기로 total 을 계산한다.
+        switch (countMode) {
+            case CACHED:
+                return PageableExecutionUtils.getPage(fetched, pageable, () -> totalCountCache.getFresh(countKey, count));
+            case APPROXIMATE:
+                boolean hasNext = fetched.size() > pageable.getPageSize();
+                List<Member> content = hasNext ? fetched.subList(0, pageable.getPageSize()) : fetched;
+                long lowerBound = pageable.getOffset() + content.size() + (hasNext ? 1 : 0);
+                long total = Math.max(lowerBound, totalCountCache.getAny(countKey).orElse(lowerBound));
+                return new PageImpl<>(content, pageable, hasNext ? total : lowerBound);
+            default:
+                return PageableExecutionUtils.getPage(fetched, pageable, count);
+        }
+    }
+
+    @Override
+    public List<MemberReadModel> findReadModelsByUsername(String username) {
+        flushPendingChanges();
+        return jdbcTemplate.query(READ_MODEL_BY_USERNAME_SQL, READ_MODEL_MAPPER, username);
+    }
+
+    @Override
+    public Optional<MemberReadModel> findReadModelByUsername(String username) {
+        //결과가 2개 이상이면 findOptionalByUsername 과 같이 IncorrectResultSizeDataAccessException
+        return Optional.ofNullable(DataAccessUtils.singleResult(findReadModelsByUsername(username)));
+    }
+
+    //JdbcTemplate 은 JPA 트랜잭션과 같은 커넥션을 쓰지만 아직 flush 되지 않은 변경은 보지 못하므로 먼저 flush 한다.
+    private void flushPendingChanges() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+    }
+
+    //chunk 를 넘겨준 뒤 이 chunk 로 올라온 엔티티(consumer 가 지연 로딩한 team 포함)만 준영속으로 만들어 힙 사용량을 chunk 크기로 유지
+    //session.clear() 는 호출한 쪽이 들고 있던 엔티티와 flush 되지 않은 변경까지 버리므로 사용하지 않는다.
+    private long flushChunk(Session session, Set<EntityKey> callerKeys, List<Member> chunk, Consumer<List<Member>> chunkConsumer) {
+        int size = chunk.size();
+        chunkConsumer.accept(new ArrayList<>(chunk));
+        chunk.clear();
+        PersistenceContext persistenceContext = session.unwrap(SessionImplementor.class).getPersistenceContext();
+        for (EntityKey key : new ArrayList<>(session.getStatistics().getEntityKeys())) {
+            if (callerKeys.contains(key)) continue;
+            Object entity = persistenceContext.getEntity(key);
+            if (entity != null && session.contains(entity)) session.evict(entity);
+        }
+        return size;
+    }
 }
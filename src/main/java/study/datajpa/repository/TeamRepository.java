@@ -1,7 +1,89 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.domain.Team;
+import study.datajpa.domain.TeamAgeCount;
+import study.datajpa.dto.TeamAgeStats;
+import study.datajpa.dto.TeamDto;
 
-public interface TeamRepository extends JpaRepository<Team, Long> {
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Transactional(readOnly = true)
+public interface TeamRepository extends JpaRepository<Team, Long>, BatchInsertRepository<Team> {
+    /**
+     * 컬렉션 fetch join
+     */
+    //컬렉션을 fetch join 하면 row 가 회원 수만큼 늘어나기 때문에 distinct 로 Team 중복을 제거한다.
+    //페이징과 함께 쓰면 하이버네이트가 전체를 메모리에 올려서 페이징하므로 페이징이 필요할 때는 쓰지 않는다.
+    @Query("select distinct t from Team t left join fetch t.members")
+    List<Team> findAllWithMembers();
+
+    @Query("select distinct t from Team t left join fetch t.members where t.id in :ids")
+    List<Team> findWithMembersByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 컬렉션 페이징 (2단계 조회)
+     */
+    //1. Team 의 id 만 페이징 해서 가져오고  2. 해당 id 들의 Team 과 members 를 fetch join 으로 가져온다.
+    //페이지 당 쿼리 수가 (id 조회 + count + fetch join) 으로 고정된다.
+    @Query(value = "select t.id from Team t", countQuery = "select count(t) from Team t")
+    Page<Long> findIdPage(Pageable pageable);
+
+    default Page<Team> findPageWithMembers(Pageable pageable) {
+        Page<Long> ids = findIdPage(pageable);
+        if (ids.isEmpty()) return ids.map(id -> null);
+        Map<Long, Team> teams = findWithMembersByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(Team::getId, Function.identity()));
+        return ids.map(teams::get);    //id 페이지의 정렬 순서를 유지
+    }
+
+    //API 응답용
+    @Query(value = "select new study.datajpa.dto.TeamDto(t.id, t.name) from Team t", countQuery = "select count(t) from Team t")
+    Page<TeamDto> findTeamDtoPage(Pageable pageable);
+
+    //증분 동기화, (lastModifiedDate, id) 워터마크 이후 변경분 (IncrementalSync)
+    @Query("select t from Team t where (t.lastModifiedDate > :since or (t.lastModifiedDate = :since and t.id > :lastId))" +
+            " and t.lastModifiedDate <= :until order by t.lastModifiedDate asc, t.id asc")
+    List<Team> findChangedSince(@Param("since") LocalDateTime since, @Param("lastId") Long lastId,
+                                @Param("until") LocalDateTime until, Pageable pageable);
+
+    //메소드 이름 규칙 + @EntityGraph 로 members fetch join
+    @EntityGraph(attributePaths = {"members"})
+    List<Team> findEntityGraphByName(String name);
+
+    /**
+     * 팀 별 회원 수, 나이 통계
+     */
+    //Team.members 로딩이나 member group by 대신 집계 테이블(TeamAgeCount)을 읽는다. 읽는 row 수는 (팀, 나이) 조합 수
+    //샤딩을 사용하면 샤드 마다 자기 팀의 집계만 있으므로 ShardedQueryExecutor.gather 로 모은다.
+    @Query("select c from TeamAgeCount c where c.memberCount > 0 order by c.teamId asc, c.age asc")
+    List<TeamAgeCount> findAgeCounts();
+
+    @Query("select c from TeamAgeCount c where c.teamId in :teamIds and c.memberCount > 0 order by c.teamId asc, c.age asc")
+    List<TeamAgeCount> findAgeCountsByTeamIdIn(@Param("teamIds") Collection<Long> teamIds);
+
+    default List<TeamAgeStats> findAgeStats() {
+        return TeamAgeStats.of(findAgeCounts());
+    }
+
+    //회원이 없는 팀은 결과에 없다.
+    default List<TeamAgeStats> findAgeStats(Collection<Long> teamIds) {
+        return TeamAgeStats.of(findAgeCountsByTeamIdIn(teamIds));
+    }
+
+    default TeamAgeStats findAgeStats(Long teamId) {
+        List<TeamAgeStats> stats = findAgeStats(List.of(teamId));
+        return stats.isEmpty() ? TeamAgeStats.empty(teamId) : stats.get(0);
+    }
 }
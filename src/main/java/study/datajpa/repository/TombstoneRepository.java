@@ -0,0 +1,27 @@
+package study.datajpa.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.domain.Tombstone;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Transactional(readOnly = true)
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+    //(deletedAt, id) 워터마크 이후 삭제분
+    @Query("select t from Tombstone t where t.entityType = :entityType" +
+            " and (t.deletedAt > :since or (t.deletedAt = :since and t.id > :lastId))" +
+            " and t.deletedAt <= :until order by t.deletedAt asc, t.id asc")
+    List<Tombstone> findDeletedSince(@Param("entityType") String entityType, @Param("since") LocalDateTime since,
+                                     @Param("lastId") Long lastId, @Param("until") LocalDateTime until, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Tombstone t where t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,40 @@
+package study.datajpa.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 증분 동기화 위치 (마지막으로 읽은 변경 시각, id)
+ */
+//같은 시각에 변경된 row 가 여러개일 수 있으므로 id 로 순서를 정해 (시각, id) 다음부터 읽는다. Window 의 keyset 과 같은 방식
+//동기화 작업은 toToken() 값을 저장해 두었다가 다음 실행 때 fromToken 으로 이어서 읽는다.
+@Getter @ToString @EqualsAndHashCode
+public class Watermark {
+    //H2, MySQL 의 TIMESTAMP 최솟값보다 크고 모든 데이터보다 앞선 시각
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final LocalDateTime modifiedAt;
+    private final Long id;
+
+    public Watermark(LocalDateTime modifiedAt, Long id) {
+        this.modifiedAt = modifiedAt;
+        this.id = id;
+    }
+
+    public static Watermark initial() {
+        return new Watermark(EPOCH, 0L);
+    }
+
+    public String toToken() {
+        return Window.encode(modifiedAt, id);
+    }
+
+    //token 이 null 이면 처음부터
+    public static Watermark fromToken(String token) throws IllegalArgumentException {
+        String[] keys = Window.decode(token, 2);
+        return keys == null ? initial() : new Watermark(LocalDateTime.parse(keys[0]), Long.valueOf(keys[1]));
+    }
+}
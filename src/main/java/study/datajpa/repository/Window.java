@@ -0,0 +1,66 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset(seek) 페이징 결과
+ */
+//Page 와 달리 totalCount, 페이지 번호가 없다. 다음 페이지를 요청할 때는 nextToken 을 그대로 넘겨주면 된다.
+//nextToken 은 마지막 row 의 (정렬키, id) 를 인코딩한 값으로, 클라이언트 입장에서는 불투명한 문자열이다.
+@Getter
+public class Window<T> {
+    private static final String SEPARATOR = ",";
+
+    private final List<T> content;
+    private final String nextToken;
+
+    private Window(List<T> content, String nextToken) {
+        this.content = content;
+        this.nextToken = nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    //size + 1 개를 조회해서 다음 페이지의 유,무를 판단한다. (Slice 와 같은 방식)
+    public static <T> Window<T> of(List<T> fetched, int size, Function<T, Object[]> keyExtractor) {
+        checkSize(size);
+        if (fetched.size() <= size) {
+            return new Window<>(Collections.unmodifiableList(fetched), null);
+        }
+        List<T> content = fetched.subList(0, size);
+        return new Window<>(Collections.unmodifiableList(content), encode(keyExtractor.apply(content.get(size - 1))));
+    }
+
+    //조회 전에 호출, size + 1 개를 조회하므로 Integer.MAX_VALUE 도 허용하지 않는다.
+    static int checkSize(int size) {
+        if (size <= 0 || size == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("window size must be between 1 and " + (Integer.MAX_VALUE - 1) + ": " + size);
+        }
+        return size;
+    }
+
+    static String encode(Object... keys) {
+        StringBuilder sb = new StringBuilder();
+        for (Object key : keys) {
+            if (sb.length() > 0) sb.append(SEPARATOR);
+            sb.append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    //첫 페이지 요청(token == null)이면 null 을 반환
+    static String[] decode(String token, int keyCount) throws IllegalArgumentException {
+        if (token == null || token.isEmpty()) return null;
+        String[] keys = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR);
+        if (keys.length != keyCount) throw new IllegalArgumentException("invalid continuation token");
+        return keys;
+    }
+}
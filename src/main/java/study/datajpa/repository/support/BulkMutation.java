@@ -0,0 +1,46 @@
+package study.datajpa.repository.support;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ChunkedBulkExecutor 로 실행할 벌크 update, delete 정의
+ */
+//JPQL 의 엔티티 alias 는 항상 e 를 사용한다.  ex) update(Member.class, "e.age = e.age + 1", "e.age >= :age").param("age", 30)
+@Getter
+public class BulkMutation {
+    public enum Type { UPDATE, DELETE }
+
+    private final Type type;
+    private final Class<?> entityClass;
+    private final String setClause;
+    private final String whereClause;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    private BulkMutation(Type type, Class<?> entityClass, String setClause, String whereClause) {
+        this.type = type;
+        this.entityClass = entityClass;
+        this.setClause = setClause;
+        this.whereClause = whereClause;
+    }
+
+    public static BulkMutation update(Class<?> entityClass, String setClause, String whereClause) {
+        return new BulkMutation(Type.UPDATE, entityClass, setClause, whereClause);
+    }
+
+    public static BulkMutation delete(Class<?> entityClass, String whereClause) {
+        return new BulkMutation(Type.DELETE, entityClass, null, whereClause);
+    }
+
+    public BulkMutation param(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public Map<String, Object> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+}
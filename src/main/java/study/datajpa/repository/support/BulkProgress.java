@@ -0,0 +1,22 @@
+package study.datajpa.repository.support;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 벌크 연산 진행 상황
+ */
+//chunk 가 커밋될 때마다 전달된다. 중간에 실패하면 마지막으로 받은 nextId 부터 다시 실행하면 된다.
+@Getter @ToString
+@AllArgsConstructor
+public class BulkProgress {
+    private final long nextId;      //다음 chunk 의 시작 id (resume 위치)
+    private final long maxId;
+    private final int chunks;
+    private final long affectedRows;
+
+    public boolean isDone() {
+        return nextId > maxId;
+    }
+}
@@ -0,0 +1,130 @@
+package study.datajpa.repository.support;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.datasource.ShardContext;
+import study.datajpa.datasource.ShardRoutingDataSource;
+import study.datajpa.domain.BaseEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 벌크 update, delete 를 PK 범위로 나눠서 실행
+ */
+//bulkAgePlus 처럼 한번에 실행하면 대상 row 전체에 락을 오래 잡고, undo 로그가 커진다.
+//PK 순서로 chunkSize 개씩 [lo, hi) 범위로 나누고 chunk 마다 별도의 트랜잭션(REQUIRES_NEW)으로 커밋한다.
+//샤딩을 사용하면 샤드 마다 따로 실행한다. (EntityManager 를 직접 사용하므로 리포지토리 라우팅을 거치지 않는다)
+//JPQL 벌크 연산은 AuditingEntityListener 를 거치지 않으므로 BaseEntity 의 lastModifiedDate, lastModifiedBy, version 을 직접 갱신한다.
+@Component
+public class ChunkedBulkExecutor {
+    private static final String ALIAS = "e";
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditorAware<String> auditorAware;
+    private final int defaultChunkSize;
+    private final ObjectProvider<ShardRoutingDataSource> routingDataSource;
+
+    public ChunkedBulkExecutor(EntityManager em, PlatformTransactionManager transactionManager,
+                               AuditorAware<String> auditorAware,
+                               @Value("${datajpa.bulk.chunk-size:1000}") int defaultChunkSize,
+                               ObjectProvider<ShardRoutingDataSource> routingDataSource) {
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.auditorAware = auditorAware;
+        this.defaultChunkSize = defaultChunkSize;
+        this.routingDataSource = routingDataSource;
+    }
+
+    public BulkProgress execute(BulkMutation mutation) {
+        return execute(mutation, 0L, defaultChunkSize, progress -> {});
+    }
+
+    public BulkProgress execute(BulkMutation mutation, long fromId, int chunkSize, Consumer<BulkProgress> listener) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+        //샤드 마다 처음부터 끝까지 실행하고 결과를 합친다. 중간에 실패하면 listener 가 받은 nextId 는 그 샤드의 위치다.
+        List<BulkProgress> results = ShardContext.onEachShard(routingDataSource.getIfAvailable(),
+                () -> executeOnCurrentShard(mutation, fromId, chunkSize, listener));
+        BulkProgress result = results.get(0);
+        for (BulkProgress next : results.subList(1, results.size())) {
+            result = new BulkProgress(Math.max(result.getNextId(), next.getNextId()), Math.max(result.getMaxId(), next.getMaxId()),
+                    result.getChunks() + next.getChunks(), result.getAffectedRows() + next.getAffectedRows());
+        }
+        return result;
+    }
+
+    //chunk 의 끝은 id 를 chunkSize 개 건너뛴 다음 id 로 찾는다. (keyset)
+    //id 가 연속이 아니어도(snowflake id 는 밀리초마다 2^22 씩 커진다) chunk 마다 최대 chunkSize 개의 row 를 처리한다.
+    private BulkProgress executeOnCurrentShard(BulkMutation mutation, long fromId, int chunkSize, Consumer<BulkProgress> listener) {
+        String entityName = em.getMetamodel().entity(mutation.getEntityClass()).getName();
+        String idName = em.getMetamodel().entity(mutation.getEntityClass()).getId(Long.class).getName();
+
+        Long maxIdFound = transactionTemplate.execute(status -> em.createQuery(
+                "select max(e." + idName + ") from " + entityName + " e where e." + idName + " >= :fromId", Long.class)
+                .setParameter("fromId", fromId)
+                .getSingleResult());
+        if (maxIdFound == null) {
+            return new BulkProgress(fromId, fromId - 1, 0, 0);
+        }
+
+        long maxId = maxIdFound;
+        String boundaryJpql = "select e." + idName + " from " + entityName + " e where e." + idName + " >= :fromId order by e." + idName;
+        String jpql = createJpql(mutation, entityName, idName);
+        BulkProgress progress = new BulkProgress(fromId, maxId, 0, 0);
+        while (!progress.isDone()) {
+            long lo = progress.getNextId();
+            long[] hi = new long[1];
+            int affected = transactionTemplate.execute(status -> {
+                List<Long> next = em.createQuery(boundaryJpql, Long.class)
+                        .setParameter("fromId", lo)
+                        .setFirstResult(chunkSize)
+                        .setMaxResults(1)
+                        .getResultList();
+                hi[0] = next.isEmpty() ? maxId + 1 : next.get(0);
+                return bind(em.createQuery(jpql), mutation, lo, hi[0]).executeUpdate();
+            });
+            progress = new BulkProgress(hi[0], maxId, progress.getChunks() + 1, progress.getAffectedRows() + affected);
+            listener.accept(progress);
+        }
+        return progress;
+    }
+
+    private String createJpql(BulkMutation mutation, String entityName, String idName) {
+        String range = ALIAS + "." + idName + " >= :chunkFrom and " + ALIAS + "." + idName + " < :chunkTo";
+        String where = mutation.getWhereClause() == null ? range : "(" + mutation.getWhereClause() + ") and " + range;
+        if (mutation.getType() == BulkMutation.Type.DELETE) {
+            return "delete from " + entityName + " " + ALIAS + " where " + where;
+        }
+        StringBuilder set = new StringBuilder(mutation.getSetClause());
+        if (isAudited(mutation)) {
+            set.append(", e.lastModifiedDate = :auditNow, e.lastModifiedBy = :auditor, e.version = e.version + 1");
+        }
+        return "update " + entityName + " " + ALIAS + " set " + set + " where " + where;
+    }
+
+    private Query bind(Query query, BulkMutation mutation, long lo, long hi) {
+        for (Map.Entry<String, Object> parameter : mutation.getParameters().entrySet()) {
+            query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+        if (mutation.getType() == BulkMutation.Type.UPDATE && isAudited(mutation)) {
+            query.setParameter("auditNow", LocalDateTime.now());
+            query.setParameter("auditor", auditorAware.getCurrentAuditor().orElse(null));
+        }
+        return query.setParameter("chunkFrom", lo).setParameter("chunkTo", hi);
+    }
+
+    private boolean isAudited(BulkMutation mutation) {
+        return BaseEntity.class.isAssignableFrom(mutation.getEntityClass());
+    }
+}
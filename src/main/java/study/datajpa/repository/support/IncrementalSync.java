@@ -0,0 +1,124 @@
+package study.datajpa.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.datasource.ShardContext;
+import study.datajpa.datasource.ShardRoutingDataSource;
+import study.datajpa.domain.BaseTimeEntity;
+import study.datajpa.domain.Tombstone;
+import study.datajpa.repository.TombstoneRepository;
+import study.datajpa.repository.Watermark;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 워터마크 기반 증분 동기화
+ */
+//전체 테이블을 다시 읽지 않고 (lastModifiedDate, id) 워터마크 이후 변경된 row 만 chunk 단위로 읽는다.
+//삭제된 row 는 tombstone 테이블에서 (deletedAt, id) 워터마크로 따로 읽는다.
+//lastModifiedDate 는 커밋이 아니라 flush 시점의 시각이라 오래 걸린 트랜잭션이 더 이른 시각으로 늦게 커밋될 수 있다.
+//until 을 현재 시각보다 safetyLag 만큼 이전으로 잡아서 아직 커밋되지 않았을 수 있는 구간은 다음 실행에서 읽는다.
+//chunk 마다 읽기 전용 트랜잭션을 새로 열고, consumer 도 그 안에서 실행한다. 반환한 워터마크를 저장해 두었다가 다음 실행에 넘긴다.
+@Slf4j
+@Component
+public class IncrementalSync {
+    private final EntityManagerFactory emf;
+    private final TombstoneRepository tombstoneRepository;
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final Duration safetyLag;
+    private final Duration tombstoneRetention;
+    private final ObjectProvider<ShardRoutingDataSource> routingDataSource;
+
+    public IncrementalSync(EntityManagerFactory emf, TombstoneRepository tombstoneRepository, PlatformTransactionManager transactionManager,
+                           @Value("${datajpa.sync.safety-lag:5s}") Duration safetyLag,
+                           @Value("${datajpa.sync.tombstone-retention:30d}") Duration tombstoneRetention,
+                           ObjectProvider<ShardRoutingDataSource> routingDataSource) {
+        this.emf = emf;
+        this.tombstoneRepository = tombstoneRepository;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.safetyLag = safetyLag;
+        this.tombstoneRetention = tombstoneRetention;
+        this.routingDataSource = routingDataSource;
+    }
+
+    //리포지토리의 findChangedSince 메소드 레퍼런스를 넘긴다. ex) memberRepository::findChangedSince
+    @FunctionalInterface
+    public interface WatermarkQuery<T> {
+        List<T> find(LocalDateTime since, Long lastId, LocalDateTime until, Pageable pageable);
+    }
+
+    public <T extends BaseTimeEntity> Watermark forEachChanged(WatermarkQuery<T> query, Watermark from, int chunkSize,
+                                                               Consumer<List<T>> consumer) {
+        return forEachChanged(query, from, defaultUntil(), chunkSize, consumer);
+    }
+
+    public <T extends BaseTimeEntity> Watermark forEachChanged(WatermarkQuery<T> query, Watermark from, LocalDateTime until,
+                                                               int chunkSize, Consumer<List<T>> consumer) {
+        Watermark watermark = from;
+        while (true) {
+            Watermark current = watermark;
+            List<T> chunk = readTemplate.execute(status -> {
+                List<T> changed = query.find(current.getModifiedAt(), current.getId(), until, PageRequest.of(0, chunkSize));
+                if (!changed.isEmpty()) consumer.accept(changed);
+                return changed;
+            });
+            if (chunk.isEmpty()) return watermark;
+            T last = chunk.get(chunk.size() - 1);
+            watermark = new Watermark(last.getLastModifiedDate(), (Long) emf.getPersistenceUnitUtil().getIdentifier(last));
+            if (chunk.size() < chunkSize) return watermark;
+        }
+    }
+
+    public Watermark forEachDeleted(Class<? extends BaseTimeEntity> entityClass, Watermark from, int chunkSize,
+                                    Consumer<List<Tombstone>> consumer) {
+        return forEachDeleted(entityClass, from, defaultUntil(), chunkSize, consumer);
+    }
+
+    public Watermark forEachDeleted(Class<? extends BaseTimeEntity> entityClass, Watermark from, LocalDateTime until,
+                                    int chunkSize, Consumer<List<Tombstone>> consumer) {
+        String entityType = entityClass.getSimpleName();
+        Watermark watermark = from;
+        while (true) {
+            Watermark current = watermark;
+            List<Tombstone> chunk = readTemplate.execute(status -> {
+                List<Tombstone> tombstones = tombstoneRepository.findDeletedSince(entityType, current.getModifiedAt(),
+                        current.getId(), until, PageRequest.of(0, chunkSize));
+                if (!tombstones.isEmpty()) consumer.accept(tombstones);
+                return tombstones;
+            });
+            if (chunk.isEmpty()) return watermark;
+            Tombstone last = chunk.get(chunk.size() - 1);
+            watermark = new Watermark(last.getDeletedAt(), last.getId());
+            if (chunk.size() < chunkSize) return watermark;
+        }
+    }
+
+    //tombstone 은 삭제된 엔티티와 같은 샤드에 기록되므로 샤드 마다 정리한다.
+    //동기화 작업이 retention 보다 오래 멈춰 있으면 삭제분을 놓치므로 그 때는 전체 동기화를 다시 해야 한다.
+    @Scheduled(fixedDelayString = "${datajpa.sync.tombstone-purge-interval-millis:3600000}")
+    public void purgeTombstones() {
+        LocalDateTime before = LocalDateTime.now().minus(tombstoneRetention);
+        int deleted = ShardContext.onEachShard(routingDataSource.getIfAvailable(), () ->
+                writeTemplate.execute(status -> tombstoneRepository.deleteDeletedBefore(before)))
+                .stream().mapToInt(Integer::intValue).sum();
+        if (deleted > 0) log.info("purged {} tombstones", deleted);
+    }
+
+    private LocalDateTime defaultUntil() {
+        return LocalDateTime.now().minus(safetyLag);
+    }
+}
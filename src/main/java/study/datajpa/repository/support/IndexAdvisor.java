@@ -0,0 +1,333 @@
+package study.datajpa.repository.support;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 리포지토리 쿼리 메소드 기반 인덱스 점검
+ */
+//메소드 이름 쿼리(PartTree)와 @Query(JPQL) 의 where, order by 절에서 컬럼을 뽑아 필요한 인덱스를 계산하고
+//DB 메타데이터의 실제 인덱스와 비교해 없는 인덱스를 create index DDL 로 알려준다.
+//인덱스 컬럼 순서는 동등 조건(=, in) 컬럼 다음에 범위 조건, 정렬 컬럼 순서. Pageable 로 넘기는 정렬은 알 수 없으므로 제외한다.
+//InnoDB, H2 의 보조 인덱스는 끝에 PK 를 포함하므로 PK 컬럼은 인덱스 뒤에 붙어있는 것으로 본다.
+@Slf4j
+@Component
+public class IndexAdvisor {
+    private static final Pattern ROOT = Pattern.compile("\\b(?:from|update)\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile("\\bwhere\\b(.*?)(?:\\border\\s+by\\b|\\bgroup\\s+by\\b|$)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ORDER_BY = Pattern.compile("\\border\\s+by\\b(.*)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final String OPERATOR = "\\s*(<>|!=|>=|<=|=|>|<|not\\s+in\\b|in\\b|not\\s+like\\b|like\\b|between\\b|is\\s+not\\b|is\\b)";
+
+    private final ApplicationContext applicationContext;
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final String ddlOutput;
+
+    public IndexAdvisor(ApplicationContext applicationContext, EntityManagerFactory entityManagerFactory, DataSource dataSource,
+                        @Value("${datajpa.index-advisor.enabled:true}") boolean enabled,
+                        @Value("${datajpa.index-advisor.ddl-output:}") String ddlOutput) {
+        this.applicationContext = applicationContext;
+        this.entityManagerFactory = entityManagerFactory;     //deferred 모드에서는 백그라운드에서 만들어지므로 사용할 때 unwrap
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.ddlOutput = ddlOutput;
+    }
+
+    //애플리케이션 시작이 끝난 뒤 한번 점검, 점검 실패는 기동에 영향을 주지 않는다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void adviseOnStartup() {
+        if (!enabled) return;
+        try {
+            List<Recommendation> missing = recommend();
+            if (missing.isEmpty()) {
+                log.info("index advisor: every repository query method is covered by an index");
+                return;
+            }
+            for (Recommendation recommendation : missing) {
+                log.warn("index advisor: missing index for {} -> {}", recommendation.getSources(), recommendation.ddl());
+            }
+            if (StringUtils.hasText(ddlOutput)) {
+                Path path = Paths.get(ddlOutput);
+                Files.write(path, missing.stream().map(Recommendation::ddl).collect(Collectors.toList()));
+                log.warn("index advisor: migration DDL written to {}", path.toAbsolutePath());
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            log.warn("index advisor failed", e);
+        }
+    }
+
+    //DB 에 없는 인덱스 목록, 다른 추천 인덱스의 앞부분으로 처리되는 추천은 합친다.
+    public List<Recommendation> recommend() throws SQLException {
+        List<Recommendation> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, List<List<String>>> existing = new HashMap<>();
+            for (Recommendation required : requiredIndexes()) {
+                List<List<String>> indexes = existing.computeIfAbsent(required.getTable(), table -> readIndexes(metaData, table));
+                if (indexes.stream().noneMatch(index -> required.isCoveredBy(index))) {
+                    missing.add(required);
+                }
+            }
+        }
+        return merge(missing);
+    }
+
+    //리포지토리 쿼리 메소드가 필요로 하는 인덱스, 같은 컬럼 조합은 하나로 모은다.
+    public List<Recommendation> requiredIndexes() {
+        Map<String, Recommendation> required = new LinkedHashMap<>();
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainClass : repositories) {
+            EntityPersister entityPersister = sessionFactory.getMetamodel().entityPersister(domainClass);
+            if (!(entityPersister instanceof AbstractEntityPersister)) continue;
+            AbstractEntityPersister persister = (AbstractEntityPersister) entityPersister;
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainClass);
+            for (Method method : information.getQueryMethods()) {
+                String source = information.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                for (Predicates predicates : analyze(method, domainClass)) {
+                    Recommendation recommendation = predicates.toRecommendation(persister);
+                    if (recommendation == null) continue;
+                    required.computeIfAbsent(recommendation.key(), key -> recommendation)
+                            .getSources().add(source);
+                }
+            }
+        }
+        return new ArrayList<>(required.values());
+    }
+
+    private List<Predicates> analyze(Method method, Class<?> domainClass) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        if (query != null) {
+            return query.nativeQuery() ? Collections.emptyList() : analyzeJpql(query.value(), domainClass);
+        }
+        try {
+            return analyzePartTree(new PartTree(method.getName(), domainClass));
+        } catch (RuntimeException e) {     //메소드 이름으로 쿼리를 만들 수 없는 경우 (named query 등)
+            return Collections.emptyList();
+        }
+    }
+
+    //or 로 나뉜 조건은 각각 다른 인덱스를 사용하므로 따로 계산한다.
+    private List<Predicates> analyzePartTree(PartTree tree) {
+        List<Predicates> result = new ArrayList<>();
+        for (PartTree.OrPart orPart : tree) {
+            Predicates predicates = new Predicates();
+            for (Part part : orPart) {
+                String property = part.getProperty().getSegment();
+                switch (part.getType()) {
+                    case SIMPLE_PROPERTY: case IN: case IS_NULL: case TRUE: case FALSE:
+                        predicates.equality(property);
+                        break;
+                    case NEGATING_SIMPLE_PROPERTY: case NOT_IN: case IS_NOT_NULL: case NOT_LIKE: case NOT_CONTAINING:
+                        break;      //부정 조건은 인덱스를 타지 않는다.
+                    default:
+                        predicates.range(property);
+                }
+            }
+            for (Sort.Order order : tree.getSort()) {
+                predicates.range(order.getProperty().split("\\.")[0]);
+            }
+            result.add(predicates);
+        }
+        return result;
+    }
+
+    private List<Predicates> analyzeJpql(String jpql, Class<?> domainClass) {
+        Matcher root = ROOT.matcher(jpql);
+        if (!root.find() || !root.group(1).equals(domainClass.getSimpleName())) return Collections.emptyList();
+        String alias = Pattern.quote(root.group(2));
+
+        Predicates predicates = new Predicates();
+        Matcher where = WHERE.matcher(jpql);
+        if (where.find()) {
+            Matcher condition = Pattern.compile("\\b" + alias + "\\.(\\w+)" + OPERATOR, Pattern.CASE_INSENSITIVE).matcher(where.group(1));
+            while (condition.find()) {
+                String operator = condition.group(2).toLowerCase().replaceAll("\\s+", " ");
+                if (operator.equals("=") || operator.equals("in") || operator.equals("is")) {
+                    predicates.equality(condition.group(1));
+                } else if (!operator.equals("<>") && !operator.equals("!=") && !operator.startsWith("not") && !operator.equals("is not")) {
+                    predicates.range(condition.group(1));
+                }
+            }
+        }
+        Matcher orderBy = ORDER_BY.matcher(jpql);
+        if (orderBy.find()) {
+            Matcher column = Pattern.compile("\\b" + alias + "\\.(\\w+)").matcher(orderBy.group(1));
+            while (column.find()) {
+                predicates.range(column.group(1));
+            }
+        }
+        return Collections.singletonList(predicates);
+    }
+
+    //index 이름 별 컬럼 목록 (ORDINAL_POSITION 순서), 식별자 대소문자는 DB 마다 다르므로 소문자로 맞춘다.
+    private List<List<String>> readIndexes(DatabaseMetaData metaData, String table) {
+        String name = table;
+        try {
+            if (metaData.storesUpperCaseIdentifiers()) name = table.toUpperCase(Locale.ROOT);
+            else if (metaData.storesLowerCaseIdentifiers()) name = table.toLowerCase(Locale.ROOT);
+            Map<String, TreeMap<Short, String>> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(null, null, name, false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (indexName == null || column == null) continue;
+                    indexes.computeIfAbsent(indexName, key -> new TreeMap<>())
+                            .put(rs.getShort("ORDINAL_POSITION"), column.toLowerCase(Locale.ROOT));
+                }
+            }
+            return indexes.values().stream().map(columns -> new ArrayList<>(columns.values())).collect(Collectors.toList());
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to read indexes of " + table, e);
+        }
+    }
+
+    //(a, b) 를 추천하면 (a) 추천은 필요 없다. 넓은 인덱스부터 보면서 이미 고른 인덱스로 처리되는 추천은 합친다.
+    private List<Recommendation> merge(List<Recommendation> recommendations) {
+        List<Recommendation> sorted = new ArrayList<>(recommendations);
+        sorted.sort(Comparator.comparingInt((Recommendation r) -> r.indexColumns().size()).reversed());
+        List<Recommendation> merged = new ArrayList<>();
+        for (Recommendation candidate : sorted) {
+            Optional<Recommendation> covering = merged.stream()
+                    .filter(chosen -> chosen.getTable().equals(candidate.getTable()))
+                    .filter(chosen -> candidate.isCoveredBy(chosen.indexColumns()))
+                    .findFirst();
+            if (covering.isPresent()) {
+                covering.get().getSources().addAll(candidate.getSources());
+            } else {
+                merged.add(candidate);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * where, order by 절에서 찾은 속성
+     */
+    private static class Predicates {
+        private final Set<String> equality = new LinkedHashSet<>();
+        private final Set<String> range = new LinkedHashSet<>();
+
+        void equality(String property) {
+            if (!range.contains(property)) equality.add(property);
+        }
+
+        //같은 컬럼이 동등, 범위 조건에 모두 있으면 (keyset 조건 등) 범위 조건으로 본다.
+        void range(String property) {
+            equality.remove(property);
+            range.add(property);
+        }
+
+        Recommendation toRecommendation(AbstractEntityPersister persister) {
+            if (equality.isEmpty() && range.isEmpty()) return null;
+            List<String> equalityColumns = columns(persister, equality);
+            List<String> rangeColumns = columns(persister, range);
+            rangeColumns.removeAll(equalityColumns);
+            return new Recommendation(persister.getTableName().toLowerCase(Locale.ROOT), equalityColumns, rangeColumns,
+                    Arrays.stream(persister.getIdentifierColumnNames()).map(c -> c.toLowerCase(Locale.ROOT)).collect(Collectors.toList()));
+        }
+
+        private List<String> columns(AbstractEntityPersister persister, Set<String> properties) {
+            List<String> columns = new ArrayList<>();
+            for (String property : properties) {
+                String[] names = property.equals(persister.getIdentifierPropertyName())
+                        ? persister.getIdentifierColumnNames()
+                        : persister.getPropertyColumnNames(property);
+                for (String name : names) {
+                    String column = name.toLowerCase(Locale.ROOT);
+                    if (!columns.contains(column)) columns.add(column);
+                }
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * 추천 인덱스
+     */
+    @Getter
+    public static class Recommendation {
+        private final String table;
+        private final List<String> equalityColumns;
+        private final List<String> rangeColumns;
+        private final List<String> primaryKey;
+        private final Set<String> sources = new TreeSet<>();
+
+        Recommendation(String table, List<String> equalityColumns, List<String> rangeColumns, List<String> primaryKey) {
+            this.table = table;
+            this.equalityColumns = equalityColumns;
+            this.rangeColumns = rangeColumns;
+            this.primaryKey = primaryKey;
+        }
+
+        public List<String> getColumns() {
+            List<String> columns = new ArrayList<>(equalityColumns);
+            columns.addAll(rangeColumns);
+            return columns;
+        }
+
+        //인덱스 앞부분이 동등 조건 컬럼(순서 무관), 그 다음이 범위, 정렬 컬럼 순서와 같으면 사용 가능
+        boolean isCoveredBy(List<String> index) {
+            List<String> withPrimaryKey = new ArrayList<>(index);
+            primaryKey.stream().filter(c -> !withPrimaryKey.contains(c)).forEach(withPrimaryKey::add);
+            List<String> columns = getColumns();
+            if (withPrimaryKey.size() < columns.size()) return false;
+            int eq = equalityColumns.size();
+            return new HashSet<>(withPrimaryKey.subList(0, eq)).equals(new HashSet<>(equalityColumns))
+                    && withPrimaryKey.subList(eq, columns.size()).equals(rangeColumns);
+        }
+
+        //동등 조건 컬럼은 순서와 상관없이 같은 인덱스
+        String key() {
+            return table + new TreeSet<>(equalityColumns) + rangeColumns;
+        }
+
+        //끝에 붙은 PK 컬럼은 보조 인덱스에 이미 포함되므로 만들 인덱스에서 뺀다.
+        List<String> indexColumns() {
+            List<String> columns = getColumns();
+            while (columns.size() > 1 && primaryKey.contains(columns.get(columns.size() - 1))) {
+                columns.remove(columns.size() - 1);
+            }
+            return columns;
+        }
+
+        public String ddl() {
+            List<String> columns = indexColumns();
+            return "create index idx_" + table + "_" + String.join("_", columns)
+                    + " on " + table + " (" + String.join(", ", columns) + ");";
+        }
+    }
+}
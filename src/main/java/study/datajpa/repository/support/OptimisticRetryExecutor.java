@@ -0,0 +1,69 @@
+package study.datajpa.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 낙관적 락 충돌 시 재시도
+ */
+//충돌이 나면 영속성 컨텍스트의 엔티티는 이미 오래된 값이고 트랜잭션도 rollback-only 가 된다.
+//그래서 시도마다 새 트랜잭션(REQUIRES_NEW)으로 처음부터 다시 조회, 수정한다.
+//action 안에서는 외부 트랜잭션의 엔티티를 재사용하지 말고 id 로 다시 조회해야 한다.
+@Slf4j
+@Component
+public class OptimisticRetryExecutor {
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+                                   @Value("${datajpa.retry.max-attempts:5}") int maxAttempts,
+                                   @Value("${datajpa.retry.initial-backoff-millis:10}") long initialBackoffMillis,
+                                   @Value("${datajpa.retry.max-backoff-millis:500}") long maxBackoffMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        return execute(maxAttempts, action);
+    }
+
+    public <T> T execute(int maxAttempts, Supplier<T> action) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be positive");
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("optimistic lock conflict, giving up after {} attempts", attempt);
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    //지수 백오프 + jitter, 동시에 충돌한 트랜잭션들이 같은 시점에 다시 부딪히지 않도록 한다.
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to retry", e);
+        }
+    }
+}
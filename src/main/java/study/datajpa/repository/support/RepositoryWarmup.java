@@ -0,0 +1,160 @@
+package study.datajpa.repository.support;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 리포지토리 초기화, 쿼리 plan 미리 만들기
+ */
+//spring.data.jpa.repositories.bootstrap-mode 가 lazy 면 리포지토리는 처음 사용할 때 만들어지고, 그때 메소드 이름 쿼리 파싱, @Query 검증을 한다.
+//애플리케이션이 요청을 받을 수 있게 된 뒤(ApplicationReadyEvent) 백그라운드에서 리포지토리를 만들고
+//조회 메소드를 placeholder 인자로 한번씩 실행해서 하이버네이트 query plan cache 를 채운다.
+//실행은 읽기-쓰기 트랜잭션 안에서 하고 롤백한다. (replica 라우팅을 써도 primary 로 실행)
+//결과 수가 제한되지 않는 목록 조회(Pageable, Top/First 가 없는 메소드)는 실행하면 테이블 전체를 읽으므로
+//@Query 는 JPQL 로 plan 만 만들고(createQuery 는 실행하지 않는다), 메소드 이름 쿼리는 건너뛴다.
+@Slf4j
+@Component
+public class RepositoryWarmup {
+    private static final Pattern LIMITING = Pattern.compile("^(find|read|get|query|search|stream)(Distinct)?(Top|First)\\d*.*");
+
+    private final ApplicationContext applicationContext;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor executor;
+    private final boolean enabled;
+    private volatile CompletableFuture<Result> completion = CompletableFuture.completedFuture(Result.EMPTY);
+
+    public RepositoryWarmup(ApplicationContext applicationContext, EntityManager em, PlatformTransactionManager transactionManager,
+                            @Lazy @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor executor,
+                            @Value("${datajpa.startup.warmup:false}") boolean enabled) {
+        this.applicationContext = applicationContext;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInBackground() {
+        if (!enabled) return;
+        completion = CompletableFuture.supplyAsync(this::warmUp, executor);
+    }
+
+    //warm up 이 끝날 때 까지 대기, 꺼져 있으면 바로 빈 결과를 반환한다.
+    public Result awaitCompletion() {
+        return completion.join();
+    }
+
+    public Result warmUp() {
+        long start = System.nanoTime();
+        Result result = new Result();
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainClass : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainClass);
+            Object repository = repositories.getRepositoryFor(domainClass).orElse(null);   //lazy 모드에서는 여기서 리포지토리가 만들어진다.
+            if (repository == null) continue;
+            for (Method method : information.getQueryMethods()) {
+                String name = information.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                Object[] args = placeholders(method, domainClass);
+                Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+                boolean planOnly = args != null && !isLimited(method);
+                if (args == null || planOnly && (query == null || query.nativeQuery())) {
+                    result.skipped.add(name);
+                    continue;
+                }
+                try {
+                    transactionTemplate.execute(status -> {
+                        status.setRollbackOnly();
+                        if (planOnly) return em.createQuery(query.value());
+                        return ReflectionUtils.invokeMethod(method, repository, args);
+                    });
+                    result.warmed.add(name);
+                } catch (RuntimeException e) {
+                    log.debug("warm up failed: {}", name, e);
+                    result.failed.add(name);
+                }
+            }
+        }
+        result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("repository warm up finished in {}ms, warmed={}, skipped={}, failed={}",
+                result.elapsedMillis, result.warmed.size(), result.skipped.size(), result.failed);
+        return result;
+    }
+
+    //변경, 락, 비동기, Stream 메소드와 placeholder 를 만들 수 없는 파라미터(컬렉션 등)가 있는 메소드는 실행하지 않는다.
+    private Object[] placeholders(Method method, Class<?> domainClass) {
+        if (AnnotatedElementUtils.hasAnnotation(method, Modifying.class)
+                || AnnotatedElementUtils.hasAnnotation(method, Lock.class)
+                || AnnotatedElementUtils.hasAnnotation(method, Async.class)
+                || Future.class.isAssignableFrom(method.getReturnType())
+                || Stream.class.isAssignableFrom(method.getReturnType())) {
+            return null;
+        }
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            if (type == String.class) args[i] = "";
+            else if (type == int.class || type == Integer.class) args[i] = 0;
+            else if (type == long.class || type == Long.class) args[i] = 0L;
+            else if (type == boolean.class || type == Boolean.class) args[i] = false;
+            else if (type == Pageable.class) args[i] = PageRequest.of(0, 1);
+            else if (type == Sort.class) args[i] = Sort.unsorted();
+            else if (type == Class.class) args[i] = domainClass;    //동적 Projection 은 엔티티로 실행
+            else if (type.isEnum() && type.getEnumConstants().length > 0) args[i] = type.getEnumConstants()[0];
+            else return null;
+        }
+        return args;
+    }
+
+    //Pageable, Top/First 로 결과 수가 제한되거나 단건(Optional, count 등)을 반환하면 실행해도 된다.
+    private boolean isLimited(Method method) {
+        if (Arrays.asList(method.getParameterTypes()).contains(Pageable.class)) return true;
+        if (LIMITING.matcher(method.getName()).matches()) return true;
+        Class<?> returnType = method.getReturnType();
+        return !Collection.class.isAssignableFrom(returnType) && !Iterable.class.isAssignableFrom(returnType) && !returnType.isArray();
+    }
+
+    @Getter
+    public static class Result {
+        static final Result EMPTY = new Result();
+
+        private final List<String> warmed = new ArrayList<>();
+        private final List<String> skipped = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+        private long elapsedMillis;
+    }
+}
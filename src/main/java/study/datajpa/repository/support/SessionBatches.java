@@ -0,0 +1,123 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 세션 별로 모은 변경을 커밋 직전에 현재 트랜잭션의 커넥션으로 JDBC 반영
+ */
+//엔티티 이벤트 리스너(OutboxWriter, TombstoneWriter, TeamAgeStatsWriter)가 변경 내용을 Batch 에 모아두면
+//커밋 직전(before transaction completion, flush 이후)에 한번에 반영한다. 엔티티 변경과 함께 커밋, 롤백된다.
+//Batch 는 세션 당 하나를 세션의 ActionQueue 에 등록하고 트랜잭션이 끝나면(커밋, 롤백) 버린다.
+//트랜잭션 리소스 키는 (SessionBatches, 세션) 이므로 writer 끼리, 세션을 키로 쓰는 PersistenceContextGuard 와 겹치지 않는다.
+public final class SessionBatches<B extends SessionBatches.Batch> {
+    private final Supplier<B> factory;
+
+    public SessionBatches(Supplier<B> factory) {
+        this.factory = factory;
+    }
+
+    @SuppressWarnings("unchecked")
+    public B get(SessionImplementor session) {
+        Key key = new Key(this, session);
+        Registration<B> registration = (Registration<B>) TransactionSynchronizationManager.getResource(key);
+        if (registration == null) {
+            registration = new Registration<>(key, factory.get());
+            TransactionSynchronizationManager.bindResource(key, registration);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) registration);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) registration);
+        }
+        return registration.batch;
+    }
+
+    public interface Batch {
+        boolean isEmpty();
+
+        //커밋 시 flush 가 끝난 뒤 호출되므로 이 트랜잭션의 모든 변경이 모여 있다.
+        void flush(Connection connection) throws SQLException;
+    }
+
+    //같은 insert 문으로 row 들을 JDBC 배치 실행
+    public static class InsertBatch implements Batch {
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        public InsertBatch(String sql) {
+            this.sql = sql;
+        }
+
+        public void add(Object... row) {
+            rows.add(row);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return rows.isEmpty();
+        }
+
+        @Override
+        public void flush(Connection connection) throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            rows.clear();
+        }
+    }
+
+    private static final class Registration<B extends Batch> implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+        private final Key key;
+        private final B batch;
+
+        Registration(Key key, B batch) {
+            this.key = key;
+            this.batch = batch;
+        }
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            if (batch.isEmpty()) return;
+            session.doWork(batch::flush);
+        }
+
+        @Override
+        public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(key);
+        }
+    }
+
+    private static final class Key {
+        private final SessionBatches<?> owner;
+        private final SessionImplementor session;
+
+        Key(SessionBatches<?> owner, SessionImplementor session) {
+            this.owner = owner;
+            this.session = session;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).owner == owner && ((Key) o).session == session;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + System.identityHashCode(session);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package study.datajpa.repository.support;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Component;
+import study.datajpa.domain.Member;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+/**
+ * 회원 벌크 연산 뒤에 팀 별 나이 집계 다시 계산
+ */
+//MemberRepository 의 @Modifying 메소드, JpaRepository 의 배치 delete, Member 대상 ChunkedBulkExecutor 실행이 끝나면 다시 계산한다.
+//리포지토리 메소드는 호출한 트랜잭션이 커밋된 뒤에 다시 계산한다. (TeamAgeStatsReconciler)
+//ChunkedBulkExecutor 는 chunk 마다 커밋하므로 실행 중에는 집계가 맞지 않고 전체가 끝난 뒤 한번 다시 계산한다.
+@Aspect
+@Component
+public class TeamAgeStatsAspect {
+    private static final Set<String> BATCH_DELETES = Set.of("deleteInBatch", "deleteAllInBatch");
+
+    private final TeamAgeStatsReconciler reconciler;
+
+    public TeamAgeStatsAspect(TeamAgeStatsReconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    @AfterReturning("target(study.datajpa.repository.MemberRepository)")
+    public void afterMemberRepository(JoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (AnnotatedElementUtils.hasAnnotation(method, Modifying.class) || BATCH_DELETES.contains(method.getName())) {
+            reconciler.reconcileAfterCommit();
+        }
+    }
+
+    @AfterReturning("execution(* study.datajpa.repository.support.ChunkedBulkExecutor.execute(..)) && args(mutation, ..)")
+    public void afterChunkedBulk(BulkMutation mutation) {
+        if (Member.class.isAssignableFrom(mutation.getEntityClass())) {
+            reconciler.reconcile();
+        }
+    }
+}
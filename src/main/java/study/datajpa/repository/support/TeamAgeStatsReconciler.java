@@ -0,0 +1,125 @@
+package study.datajpa.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.datasource.ShardContext;
+import study.datajpa.datasource.ShardRoutingDataSource;
+
+import java.util.List;
+
+/**
+ * 팀 별 나이 집계(team_age_count)를 member 테이블로 다시 계산
+ */
+//JPQL 벌크 연산(bulkAgePlus, deleteInBatch, ChunkedBulkExecutor)은 엔티티 이벤트가 없어서 TeamAgeStatsWriter 가 증감을 알 수 없다.
+//TeamAgeStatsAspect 가 벌크 연산 뒤에 reconcileAfterCommit 을 호출하면 진행 중인 트랜잭션이 커밋된 뒤에(롤백되면 하지 않는다),
+//트랜잭션 밖이면 바로 다시 계산한다. 호출한 트랜잭션은 집계 테이블을 건드리지 않으므로 커밋이 늦어지지 않는다.
+//다시 계산은 팀 id 구간(TEAMS_PER_TRANSACTION) 마다 새 트랜잭션에서 한다. 구간의 team row 를 id 순서로 잠근 뒤 그 팀들의 집계만 지우고 다시 만든다.
+//TeamAgeStatsWriter 도 같은 순서로 team row 를 잠그고 증감하므로 동시에 커밋되는 회원 변경이 빠지거나 두번 반영되지 않고,
+//한번에 잠기는 것은 한 구간의 팀 뿐이다. 샤딩을 사용하면 샤드 마다 다시 계산한다.
+@Slf4j
+@Component
+public class TeamAgeStatsReconciler {
+    static final int TEAMS_PER_TRANSACTION = 100;
+
+    private static final String NEXT_TEAMS_SQL = "select team_id from team where team_id > ? order by team_id limit ?";
+    private static final String LOCK_TEAMS_SQL = "select team_id from team where team_id between ? and ? order by team_id for update";
+    private static final String DELETE_SQL = "delete from team_age_count where team_id between ? and ?";
+    private static final String RECOMPUTE_SQL = "insert into team_age_count (team_id, age, member_count)"
+            + " select team_id, age, count(*) from member where team_id between ? and ? group by team_id, age";
+
+    private final TeamAgeStatsWriter writer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<ShardRoutingDataSource> routingDataSource;
+
+    public TeamAgeStatsReconciler(TeamAgeStatsWriter writer, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager, ObjectProvider<ShardRoutingDataSource> routingDataSource) {
+        this.writer = writer;
+        this.jdbcTemplate = jdbcTemplate;
+        //afterCommit 에서는 끝난 트랜잭션의 리소스가 아직 바인딩되어 있으므로 항상 새 트랜잭션으로 실행
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.routingDataSource = routingDataSource;
+    }
+
+    //ddl-auto 가 create 가 아니면 기존 회원이 있는데 집계가 비어있을 수 있으므로 기동 후 한번 채운다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeOnStartup() {
+        if (!writer.isEnabled()) return;
+        try {
+            Integer counts = jdbcTemplate.queryForObject("select count(*) from team_age_count", Integer.class);
+            if (counts != null && counts == 0) reconcile();
+        } catch (RuntimeException e) {
+            log.warn("team age stats initialization failed", e);
+        }
+    }
+
+    //트랜잭션 안에서 여러번 호출되어도 커밋 후 한번만 다시 계산한다.
+    public void reconcileAfterCommit() {
+        if (!writer.isEnabled()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reconcile();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) return;
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                //호출한 트랜잭션은 이미 커밋되었으므로 실패해도 호출한 쪽에 던지지 않는다. 다음 reconcile 에서 맞춰진다.
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    log.warn("team age stats reconcile after commit failed", e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TeamAgeStatsReconciler.this);
+            }
+        });
+    }
+
+    //팀 id 구간 마다 새 트랜잭션에서 집계를 다시 계산
+    public void reconcile() {
+        if (!writer.isEnabled()) return;
+        long start = System.nanoTime();
+        List<Integer> teams = ShardContext.onEachShard(routingDataSource.getIfAvailable(), this::reconcileShard);
+        log.info("team age stats recomputed for {} teams in {}ms",
+                teams.stream().mapToInt(Integer::intValue).sum(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int reconcileShard() {
+        int teams = 0;
+        long after = Long.MIN_VALUE;
+        while (true) {
+            long from = after;
+            List<Long> ids = transactionTemplate.execute(status -> recomputeNext(from));
+            if (ids.isEmpty()) return teams;
+            teams += ids.size();
+            after = ids.get(ids.size() - 1);
+        }
+    }
+
+    //after 다음 팀 id 구간을 잠그고 다시 계산, 처리한 팀 id 를 돌려준다.
+    private List<Long> recomputeNext(long after) {
+        List<Long> ids = jdbcTemplate.queryForList(NEXT_TEAMS_SQL, Long.class, after, TEAMS_PER_TRANSACTION);
+        if (ids.isEmpty()) return ids;
+        long first = ids.get(0);
+        long last = ids.get(ids.size() - 1);
+        jdbcTemplate.queryForList(LOCK_TEAMS_SQL, Long.class, first, last);
+        jdbcTemplate.update(DELETE_SQL, first, last);
+        jdbcTemplate.update(RECOMPUTE_SQL, first, last);
+        return ids;
+    }
+}
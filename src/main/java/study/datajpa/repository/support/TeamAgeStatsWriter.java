@@ -0,0 +1,166 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.domain.TeamAgeCount;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 회원 변경을 같은 트랜잭션 안에서 팀 별 나이 집계(team_age_count)에 반영
+ */
+//회원 insert, update(나이, 팀 변경), delete 이벤트에서 (팀, 나이) 별 증감을 세션 별로 모아두고 커밋 직전에 JDBC 로 반영한다. (SessionBatches)
+//같은 (팀, 나이) row 를 동시에 처음 insert 하면 한쪽이 PK 중복으로 실패하므로 반영 전에 대상 team row 를 id 순서로 잠근다.
+//같은 팀의 회원을 바꾸는 트랜잭션은 커밋 직전 잠깐 동안 순서대로 실행된다.
+//JPQL 벌크 연산은 이벤트가 없으므로 TeamAgeStatsReconciler 가 커밋 후 별도 트랜잭션에서 다시 계산한다.
+@Component
+public class TeamAgeStatsWriter implements Integrator, PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private static final String LOCK_TEAM_SQL = "select team_id from team where team_id = ? for update";
+    private static final String UPDATE_SQL = "update team_age_count set member_count = member_count + ? where team_id = ? and age = ?";
+    private static final String INSERT_SQL = "insert into team_age_count (team_id, age, member_count) values (?, ?, ?)";
+    private static final String DELETE_EMPTY_SQL = "delete from team_age_count where team_id = ? and age = ? and member_count <= 0";
+
+    private final SessionBatches<Pending> batches = new SessionBatches<>(Pending::new);
+    private final boolean enabled;
+    private final ObjectProvider<TeamAgeStatsReconciler> reconciler;     //reconciler 가 writer 를 주입받으므로 지연 조회
+
+    public TeamAgeStatsWriter(@Value("${datajpa.team-stats.enabled:true}") boolean enabled,
+                              ObjectProvider<TeamAgeStatsReconciler> reconciler) {
+        this.enabled = enabled;
+        this.reconciler = reconciler;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        if (!enabled) return;
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof Member)) return;
+        count(event.getSession(), event.getPersister(), event.getState(), 1);
+    }
+
+    //나이, 팀이 모두 그대로면 반영할 것이 없다. 이전 상태를 모르면(detached 엔티티 update) 커밋 후 다시 계산한다.
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) return;
+        EntityPersister persister = event.getPersister();
+        if (event.getOldState() == null) {
+            reconciler.getObject().reconcileAfterCommit();
+            return;
+        }
+        if (age(persister, event.getOldState()) == age(persister, event.getState())
+                && Objects.equals(teamId(persister, event.getOldState()), teamId(persister, event.getState()))) return;
+        count(event.getSession(), persister, event.getOldState(), -1);
+        count(event.getSession(), persister, event.getState(), 1);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Member)) return;
+        count(event.getSession(), event.getPersister(), event.getDeletedState(), -1);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void count(EventSource session, EntityPersister persister, Object[] state, long delta) {
+        Long teamId = teamId(persister, state);
+        if (teamId == null) return;     //팀이 없는 회원은 집계하지 않는다.
+        batches.get(session).deltas.merge(new TeamAgeCount.Key(teamId, age(persister, state)), delta, Long::sum);
+    }
+
+    private int age(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+
+    private Long teamId(EntityPersister persister, Object[] state) {
+        Object team = state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team == null ? null : ((Team) team).getId();
+    }
+
+    private static void apply(Connection connection, Map<TeamAgeCount.Key, Long> deltas) throws SQLException {
+        try (PreparedStatement lock = connection.prepareStatement(LOCK_TEAM_SQL);
+             PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_SQL);
+             PreparedStatement deleteEmpty = connection.prepareStatement(DELETE_EMPTY_SQL)) {
+            Long lockedTeamId = null;
+            for (Map.Entry<TeamAgeCount.Key, Long> entry : deltas.entrySet()) {
+                TeamAgeCount.Key key = entry.getKey();
+                long delta = entry.getValue();
+                if (delta == 0) continue;
+                if (!key.getTeamId().equals(lockedTeamId)) {      //deltas 가 팀 id 순서이므로 팀 마다 한번
+                    lock.setLong(1, key.getTeamId());
+                    lock.executeQuery().close();
+                    lockedTeamId = key.getTeamId();
+                }
+                update.setLong(1, delta);
+                update.setLong(2, key.getTeamId());
+                update.setInt(3, key.getAge());
+                if (update.executeUpdate() == 0) {
+                    insert.setLong(1, key.getTeamId());
+                    insert.setInt(2, key.getAge());
+                    insert.setLong(3, delta);
+                    insert.executeUpdate();
+                }
+                if (delta < 0) {
+                    deleteEmpty.setLong(1, key.getTeamId());
+                    deleteEmpty.setInt(2, key.getAge());
+                    deleteEmpty.executeUpdate();
+                }
+            }
+        }
+    }
+
+    //팀 id, 나이 순서로 반영해서 트랜잭션끼리 같은 순서로 락을 잡는다.
+    private static class Pending implements SessionBatches.Batch {
+        private final Map<TeamAgeCount.Key, Long> deltas = new TreeMap<>(
+                Comparator.comparing(TeamAgeCount.Key::getTeamId).thenComparingInt(TeamAgeCount.Key::getAge));
+
+        @Override
+        public boolean isEmpty() {
+            return deltas.isEmpty();
+        }
+
+        @Override
+        public void flush(Connection connection) throws SQLException {
+            apply(connection, deltas);
+            deltas.clear();
+        }
+    }
+}
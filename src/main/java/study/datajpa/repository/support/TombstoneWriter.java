@@ -0,0 +1,60 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.datajpa.audit.AuditorHolder;
+import study.datajpa.domain.BaseTimeEntity;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * 엔티티 삭제를 같은 트랜잭션 안에서 tombstone 테이블에 기록
+ */
+//증분 동기화 대상(BaseTimeEntity, Long id)만 기록한다. 삭제를 세션 별로 모아두고 커밋 직전에 JDBC 배치 insert 한다. (SessionBatches)
+//JPQL 벌크 delete 는 엔티티 이벤트가 발생하지 않으므로 기록되지 않는다.
+@Component
+public class TombstoneWriter implements Integrator, PostDeleteEventListener {
+    private static final String INSERT_SQL = "insert into tombstone (entity_type, entity_id, deleted_at, deleted_by) values (?, ?, ?, ?)";
+
+    private final SessionBatches<SessionBatches.InsertBatch> batches = new SessionBatches<>(() -> new SessionBatches.InsertBatch(INSERT_SQL));
+    private final boolean enabled;
+
+    public TombstoneWriter(@Value("${datajpa.sync.tombstones:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        if (!enabled) return;
+        serviceRegistry.getService(EventListenerRegistry.class).appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof BaseTimeEntity) || !(event.getId() instanceof Long)) return;
+        batches.get(event.getSession()).add(
+                event.getPersister().getMappedClass().getSimpleName(),
+                event.getId(),
+                Timestamp.valueOf(LocalDateTime.now()),
+                AuditorHolder.current().orElse(AuditorHolder.SYSTEM));
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
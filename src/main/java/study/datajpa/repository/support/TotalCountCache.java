@@ -0,0 +1,60 @@
+package study.datajpa.repository.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 조건(predicate) 별 totalCount 캐시
+ */
+//CACHED 는 ttl 이내의 값만 사용하고, APPROXIMATE 는 maxStaleness 까지 남아있는 값을 사용한다.
+@Component
+public class TotalCountCache {
+    private final Cache<String, Entry> cache;
+    private final long ttlNanos;
+
+    public TotalCountCache(@Value("${datajpa.paging.count-cache-ttl:10s}") Duration ttl,
+                           @Value("${datajpa.paging.count-cache-max-staleness:10m}") Duration maxStaleness,
+                           @Value("${datajpa.paging.count-cache-size:10000}") long maximumSize) {
+        this.ttlNanos = ttl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maxStaleness)
+                .build();
+    }
+
+    public long getFresh(String key, LongSupplier counter) {
+        Entry entry = cache.getIfPresent(key);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.writtenAt <= ttlNanos) {
+            return entry.total;
+        }
+        long total = counter.getAsLong();
+        cache.put(key, new Entry(total, now));
+        return total;
+    }
+
+    public OptionalLong getAny(String key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? OptionalLong.empty() : OptionalLong.of(entry.total);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Entry {
+        private final long total;
+        private final long writtenAt;
+
+        private Entry(long total, long writtenAt) {
+            this.total = total;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package study.datajpa.search;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.stereotype.Component;
+import study.datajpa.domain.Member;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 회원 이름 메모리 인덱스, 접두어 검색과 오타 허용 검색
+ */
+//이름은 소문자로 바꿔서 정렬된 맵(이름 -> 회원 id 들)에 두고 접두어 검색은 tailMap 으로 찾는다.
+//오타 검색은 이름의 3-gram -> 이름 목록(posting)으로 후보를 좁힌 뒤 편집 거리를 계산한다.
+//삽입, 삭제, 교체는 3-gram 을 최대 3개, 인접한 두 글자 바꿈(편집 1번으로 센다)은 최대 4개 바꾸므로
+//검색어의 서로 다른 3-gram 중 (개수 - 4 * 거리) 개 이상을 공유하는 이름만 후보가 된다.
+//posting 은 이름(Name)의 참조만 배열로 들고 있고, Name 은 자기 3-gram 마다 posting 안의 위치를 기억한다.
+//그래서 이름을 지울 때 posting 을 훑지 않고 그 위치에 마지막 원소를 옮겨 지운다. (쓰기 락을 잡는 시간이 posting 길이와 무관)
+//회원 변경은 커밋 후(post commit) 이벤트로 바로 반영하고, 벌크 연산, 다른 인스턴스의 변경은 UsernameIndexLoader 가 주기적으로 반영한다.
+@Component
+public class UsernameIndex implements Integrator, PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    private static final char PAD = '\u0000';
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> members = new HashMap<>();
+    private final TreeMap<String, Ids> idsByName = new TreeMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    /**
+     * 접두어 검색, 이름 순서 (대소문자 구분 없음)
+     */
+    public List<UsernameMatch> findByPrefix(String prefix, int minAge, int maxAge, int limit) {
+        String key = normalize(prefix);
+        List<UsernameMatch> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Ids> name : idsByName.tailMap(key, true).entrySet()) {
+                if (!name.getKey().startsWith(key) || result.size() >= limit) break;
+                collect(name.getValue(), 0, minAge, maxAge, limit, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 오타 허용 검색, 편집 거리 순서
+     */
+    //허용 거리는 검색어 길이로 정한다. 1 ~ 2 글자는 0, 3 ~ 5 글자는 1, 6 글자 이상은 2 (maxEdits 보다 크지 않게)
+    public List<UsernameMatch> findSimilar(String query, int maxEdits, int minAge, int maxAge, int limit) {
+        String key = normalize(query);
+        int edits = Math.min(maxEdits, key.length() < 3 ? 0 : key.length() < 6 ? 1 : 2);
+        List<UsernameMatch> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (edits == 0) {
+                Ids ids = idsByName.get(key);
+                if (ids != null) collect(ids, 0, minAge, maxAge, limit, result);
+                return result;
+            }
+            Set<Long> grams = trigramsOf(key);
+            int threshold = grams.size() - 4 * edits;
+            Map<String, int[]> shared = new HashMap<>();
+            if (threshold <= 0) {
+                //같은 글자가 반복되는 검색어는 3-gram 이 적어서 걸러낼 수 없으므로 길이가 비슷한 이름을 모두 후보로
+                for (String name : idsByName.keySet()) {
+                    if (Math.abs(name.length() - key.length()) <= edits) shared.put(name, new int[1]);
+                }
+            }
+            for (Long gram : grams) {
+                Postings postings = trigrams.get(gram);
+                if (postings == null) continue;
+                for (int i = 0; i < postings.size; i++) {
+                    String name = postings.names[i].key;
+                    if (Math.abs(name.length() - key.length()) <= edits) {
+                        shared.computeIfAbsent(name, n -> new int[1])[0]++;
+                    }
+                }
+            }
+            List<Candidate> candidates = new ArrayList<>();
+            for (Map.Entry<String, int[]> candidate : shared.entrySet()) {
+                if (candidate.getValue()[0] < threshold) continue;
+                int distance = distance(key, candidate.getKey(), edits);
+                if (distance <= edits) candidates.add(new Candidate(candidate.getKey(), distance));
+            }
+            candidates.sort(Comparator.comparingInt((Candidate c) -> c.distance).thenComparing(c -> c.name));
+            for (Candidate candidate : candidates) {
+                if (result.size() >= limit) break;
+                collect(idsByName.get(candidate.name), candidate.distance, minAge, maxAge, limit, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return members.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //추가, 변경 모두 처리 (같은 값이면 변경 없음)
+    public void put(Long id, String username, int age) {
+        if (username == null) {
+            remove(id);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry previous = members.get(id);
+            String key = normalize(username);
+            if (previous != null && previous.key.equals(key)) {
+                members.put(id, new Entry(previous.key, username, age));
+                return;
+            }
+            if (previous != null) unlink(id, previous.key);
+            members.put(id, new Entry(link(id, key), username, age));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = members.remove(id);
+            if (previous != null) unlink(id, previous.key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) index((Member) event.getEntity());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) index((Member) event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) remove((Long) event.getId());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return persister.getMappedClass() == Member.class;
+    }
+
+    private void index(Member member) {
+        put(member.getId(), member.getUsername(), member.getAge());
+    }
+
+    private void collect(Ids ids, int distance, int minAge, int maxAge, int limit, List<UsernameMatch> result) {
+        for (int i = 0; i < ids.size && result.size() < limit; i++) {
+            Entry entry = members.get(ids.values[i]);
+            if (entry.age >= minAge && entry.age <= maxAge) {
+                result.add(new UsernameMatch(ids.values[i], entry.username, entry.age, distance));
+            }
+        }
+    }
+
+    //처음 추가되는 이름이면 3-gram posting 에도 추가, 맵에 저장된 이름 문자열을 반환해서 공유한다.
+    private String link(Long id, String key) {
+        Ids ids = idsByName.get(key);
+        if (ids == null) {
+            Name name = new Name(key, trigramsOf(key));
+            ids = new Ids(name);
+            idsByName.put(key, ids);
+            for (int i = 0; i < name.grams.length; i++) {
+                trigrams.computeIfAbsent(name.grams[i], g -> new Postings()).add(name, i);
+            }
+        } else {
+            key = idsByName.ceilingKey(key);
+        }
+        ids.add(id);
+        return key;
+    }
+
+    private void unlink(Long id, String key) {
+        Ids ids = idsByName.get(key);
+        if (ids == null || !ids.remove(id) || ids.size > 0) return;
+        idsByName.remove(key);
+        Name name = ids.name;
+        for (int i = 0; i < name.grams.length; i++) {
+            Postings postings = trigrams.get(name.grams[i]);
+            postings.remove(name, i);
+            if (postings.size == 0) trigrams.remove(name.grams[i]);
+        }
+    }
+
+    static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    //앞뒤로 2글자씩 채워서 길이 n 인 이름에서 n + 2 개의 3-gram 을 만든다. 3글자를 하나의 long 으로
+    static Set<Long> trigramsOf(String key) {
+        String padded = "" + PAD + PAD + key + PAD + PAD;
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    //인접한 두 글자 바꿈을 한번으로 세는 편집 거리(OSA), 한 행의 최솟값이 max 를 넘으면 max + 1 을 반환
+    static int distance(String a, String b, int max) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) return max + 1;
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String username;
+        private final int age;
+
+        Entry(String key, String username, int age) {
+            this.key = key;
+            this.username = username;
+            this.age = age;
+        }
+    }
+
+    private static final class Candidate {
+        private final String name;
+        private final int distance;
+
+        Candidate(String name, int distance) {
+            this.name = name;
+            this.distance = distance;
+        }
+    }
+
+    //회원 id 목록, 대부분 1 ~ 몇 개이므로 long 배열로
+    private static final class Ids {
+        private final Name name;
+        private long[] values = new long[1];
+        private int size;
+
+        Ids(Name name) {
+            this.name = name;
+        }
+
+        void add(long id) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = id;
+        }
+
+        boolean remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == id) {
+                    values[i] = values[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    //인덱스에 있는 이름, grams[i] 의 posting 에서 slots[i] 번째에 있다.
+    private static final class Name {
+        private final String key;
+        private final long[] grams;
+        private final int[] slots;
+
+        Name(String key, Set<Long> grams) {
+            this.key = key;
+            this.grams = grams.stream().mapToLong(Long::longValue).sorted().toArray();
+            this.slots = new int[this.grams.length];
+        }
+
+        int indexOf(long gram) {
+            return Arrays.binarySearch(grams, gram);
+        }
+    }
+
+    //3-gram 을 포함하는 이름 목록, 삭제는 마지막 원소를 지운 자리로 옮기고 옮긴 이름의 위치를 고친다.
+    private static final class Postings {
+        private Name[] names = new Name[4];
+        private int size;
+
+        //gramIndex 는 이 posting 의 3-gram 이 name.grams 에서 몇 번째인지
+        void add(Name name, int gramIndex) {
+            if (size == names.length) names = Arrays.copyOf(names, size * 2);
+            name.slots[gramIndex] = size;
+            names[size++] = name;
+        }
+
+        void remove(Name name, int gramIndex) {
+            int slot = name.slots[gramIndex];
+            Name last = names[--size];
+            names[slot] = last;
+            names[size] = null;
+            if (last != name) last.slots[last.indexOf(name.grams[gramIndex])] = slot;
+        }
+    }
+}
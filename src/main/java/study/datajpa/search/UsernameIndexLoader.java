@@ -0,0 +1,95 @@
+package study.datajpa.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import study.datajpa.domain.Member;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.Watermark;
+import study.datajpa.repository.support.IncrementalSync;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * UsernameIndex 초기 적재와 주기적인 따라잡기
+ */
+//기동 후(ApplicationReadyEvent) 백그라운드에서 member 테이블을 (lastModifiedDate, id) 순서로 chunk 단위로 읽어 인덱스를 만든다.
+//이후에는 마지막 watermark 부터 변경, 삭제(tombstone)만 읽어 반영한다. 엔티티 이벤트가 없는 벌크 연산(bulkAgePlus)과
+//다른 인스턴스의 변경, 적재 중에 커밋 이벤트와 순서가 엇갈린 row 도 여기서 맞춰진다.
+//샤딩을 사용하면 member 조회에 샤드 지정이 필요해서 적재가 실패하고 경고만 남긴다. (이후 커밋 이벤트로 들어오는 변경만 인덱싱)
+@Slf4j
+@Component
+public class UsernameIndexLoader {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final UsernameIndex index;
+    private final IncrementalSync incrementalSync;
+    private final MemberRepository memberRepository;
+    private final AsyncTaskExecutor executor;
+    private final boolean enabled;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile boolean loaded;
+    private Watermark changed = Watermark.initial();
+    private Watermark deleted = Watermark.initial();
+
+    public UsernameIndexLoader(UsernameIndex index, IncrementalSync incrementalSync, MemberRepository memberRepository,
+                               @Lazy @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor executor,
+                               @Value("${datajpa.search.username-index.enabled:true}") boolean enabled) {
+        this.index = index;
+        this.incrementalSync = incrementalSync;
+        this.memberRepository = memberRepository;
+        this.executor = executor;
+        this.enabled = enabled;
+        if (!enabled) ready.complete(null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!enabled) return;
+        CompletableFuture.runAsync(this::refresh, executor).whenComplete((result, e) -> {
+            if (e != null) log.warn("username index load failed, only committed entity events are indexed", e);
+            loaded = e == null;
+            ready.complete(null);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${datajpa.search.username-index.refresh-interval-millis:10000}")
+    public void refreshScheduled() {
+        if (!loaded) return;     //꺼져 있거나 적재 전, 적재 실패
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("username index refresh failed", e);
+        }
+    }
+
+    //초기 적재(또는 적재 시도)가 끝날 때 까지 대기
+    public void awaitReady() {
+        ready.join();
+    }
+
+    //마지막 watermark 이후의 변경, 삭제를 반영하고 반영한 row 수를 반환, 스케줄러와 직접 호출이 겹치지 않도록 동기화
+    public synchronized int refresh() {
+        long start = System.nanoTime();
+        int[] count = new int[1];
+        changed = incrementalSync.forEachChanged(memberRepository::findChangedSince, changed, CHUNK_SIZE, chunk -> {
+            for (Member member : chunk) index.put(member.getId(), member.getUsername(), member.getAge());
+            count[0] += chunk.size();
+        });
+        deleted = incrementalSync.forEachDeleted(Member.class, deleted, CHUNK_SIZE, chunk -> {
+            chunk.forEach(tombstone -> index.remove(tombstone.getEntityId()));
+            count[0] += chunk.size();
+        });
+        if (count[0] > 0) {
+            log.info("username index applied {} changes in {}ms, size={}", count[0], (System.nanoTime() - start) / 1_000_000, index.size());
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,12 @@
+package study.datajpa.search;
+
+import lombok.Value;
+
+@Value
+public class UsernameMatch {
+    Long id;
+    String username;
+    int age;
+    //오타 검색에서 검색어와의 편집 거리, 접두어 검색은 0
+    int distance;
+}
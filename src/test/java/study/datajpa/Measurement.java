@@ -0,0 +1,30 @@
+package study.datajpa;
+
+import lombok.Getter;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 현재 스레드에서 실행한 작업의 할당 바이트, 걸린 시간
+ */
+//테스트에서 두 방식을 대략 비교해서 출력하는 용도, 정확한 측정은 jmh 소스셋의 벤치마크를 사용한다.
+@Getter
+public final class Measurement {
+    private final long allocatedBytes;
+    private final long elapsedNanos;
+
+    private Measurement(long allocatedBytes, long elapsedNanos) {
+        this.allocatedBytes = allocatedBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public static Measurement of(Runnable task) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        task.run();
+        long elapsed = System.nanoTime() - start;
+        return new Measurement(threads.getThreadAllocatedBytes(threadId) - bytes, elapsed);
+    }
+}
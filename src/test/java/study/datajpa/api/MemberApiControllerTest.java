@@ -0,0 +1,107 @@
+package study.datajpa.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.monitoring.QueryMetricsContext;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+//커밋 후 이벤트로 ETag 캐시를 지우는 것을 확인해야 하므로 테스트 메소드를 트랜잭션으로 묶지 않는다.
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberApiControllerTest {
+    @Autowired private MockMvc mockMvc;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void notModifiedWithoutQuery() throws Exception {
+        //given
+        Team team = teamRepository.save(new Team("apiTeam"));
+        Member member = memberRepository.save(Member.createMember("api-" + System.nanoTime(), 10, team));
+        String etag = mockMvc.perform(get("/api/members/{id}", member.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(member.getUsername()))
+                .andExpect(jsonPath("$.teamName").value("apiTeam"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        //when
+        long statements = QueryMetricsContext.current().getStatements();
+        mockMvc.perform(get("/api/members/{id}", member.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        //then, DB 조회 없이 304
+        assertThat(QueryMetricsContext.current().getStatements()).isEqualTo(statements);
+
+        //when, 수정이 커밋되면 ETag 가 바뀐다.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                memberRepository.findById(member.getId()).get().changeAge(11));
+        String changed = mockMvc.perform(get("/api/members/{id}", member.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changed).isNotEqualTo(etag);
+    }
+
+    @Test
+    void notFound() throws Exception {
+        mockMvc.perform(get("/api/members/{id}", Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void page() throws Exception {
+        memberRepository.saveAll(IntStream.range(0, 5)
+                .mapToObj(i -> new Member("api-page-" + i, i)).collect(Collectors.toList()));
+
+        mockMvc.perform(get("/api/members").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(3))
+                .andExpect(jsonPath("$.content[0].id").exists());
+    }
+
+    @Test
+    void streamNdjson() throws Exception {
+        //given
+        String prefix = "api-stream-" + System.nanoTime() + "-";
+        List<Long> saved = memberRepository.saveAll(IntStream.range(0, 30)
+                .mapToObj(i -> new Member(prefix + i, i)).collect(Collectors.toList()))
+                .stream().map(Member::getId).collect(Collectors.toList());
+
+        //when
+        MvcResult async = mockMvc.perform(get("/api/members/stream").param("chunkSize", "7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(async))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MemberApiController.NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        //then, 한 줄에 회원 하나, id 순서대로 중복 없이
+        List<String> lines = Arrays.asList(body.split("\n"));
+        List<Long> ids = lines.stream()
+                .map(line -> Long.valueOf(line.replaceAll(".*\"id\":(\\d+).*", "$1")))
+                .collect(Collectors.toList());
+        assertThat(ids).isSorted().doesNotHaveDuplicates().containsAll(saved);
+        assertThat(lines.stream().filter(line -> line.contains(prefix))).hasSize(30);
+    }
+}
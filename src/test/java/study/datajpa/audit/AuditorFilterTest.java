@@ -0,0 +1,45 @@
+package study.datajpa.audit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AuditorFilterTest {
+
+    @Test
+    void actorHeaderOnlyFromTrustedProxy() throws Exception {
+        AuditorFilter filter = new AuditorFilter(Collections.singleton("10.0.0.1"));
+
+        //신뢰하지 않는 주소에서 온 헤더는 무시
+        MockHttpServletRequest forged = new MockHttpServletRequest();
+        forged.setRemoteAddr("192.168.0.7");
+        forged.addHeader(AuditorFilter.ACTOR_HEADER, "admin");
+        assertThat(auditorDuring(filter, forged)).contains(AuditorHolder.SYSTEM);
+
+        MockHttpServletRequest proxied = new MockHttpServletRequest();
+        proxied.setRemoteAddr("10.0.0.1");
+        proxied.addHeader(AuditorFilter.ACTOR_HEADER, "memberA");
+        assertThat(auditorDuring(filter, proxied)).contains("memberA");
+
+        //인증 정보가 있으면 헤더보다 우선
+        MockHttpServletRequest authenticated = new MockHttpServletRequest();
+        authenticated.setUserPrincipal(() -> "memberB");
+        authenticated.addHeader(AuditorFilter.ACTOR_HEADER, "admin");
+        assertThat(auditorDuring(new AuditorFilter(Set.of()), authenticated)).contains("memberB");
+
+        assertThat(AuditorHolder.current()).contains(AuditorHolder.SYSTEM);
+    }
+
+    private Optional<String> auditorDuring(AuditorFilter filter, MockHttpServletRequest request) throws Exception {
+        AtomicReference<Optional<String>> auditor = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> auditor.set(AuditorHolder.current()));
+        return auditor.get();
+    }
+}
@@ -0,0 +1,66 @@
+package study.datajpa.audit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.AuditorAware;
+import study.datajpa.Measurement;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AuditorHolderTest {
+
+    @AfterEach
+    void tearDown() {
+        AuditorHolder.clear();
+    }
+
+    @Test
+    void currentAuditor() {
+        assertThat(AuditorHolder.current()).contains(AuditorHolder.SYSTEM);
+
+        AuditorHolder.set("memberA");
+        Optional<String> auditor = AuditorHolder.current();
+
+        assertThat(auditor).contains("memberA");
+        assertThat(AuditorHolder.current()).isSameAs(auditor);
+
+        //같은 사용자 ID 는 같은 인스턴스를 재사용
+        AuditorHolder.set(new String("memberA"));
+        assertThat(AuditorHolder.current()).isSameAs(auditor);
+
+        AuditorHolder.clear();
+        assertThat(AuditorHolder.current()).contains(AuditorHolder.SYSTEM);
+    }
+
+    @Test
+    void auditOverheadPerEntity() {
+        //기존 빈: 엔티티 저장마다 UUID 생성 vs 요청 단위로 캐시된 사용자 ID
+        AuditorAware<String> uuidProvider = () -> Optional.of(UUID.randomUUID().toString());
+        AuditorAware<String> holderProvider = AuditorHolder::current;
+        AuditorHolder.set("memberA");
+
+        int calls = 1_000_000;
+        measure(uuidProvider, calls);   //warm up
+        measure(holderProvider, calls);
+        Measurement uuid = measure(uuidProvider, calls);
+        Measurement holder = measure(holderProvider, calls);
+
+        System.out.println("uuid auditor -> " + uuid.getElapsedNanos() / calls + " ns/op, " + uuid.getAllocatedBytes() / calls + " bytes/op");
+        System.out.println("cached auditor -> " + holder.getElapsedNanos() / calls + " ns/op, " + holder.getAllocatedBytes() / calls + " bytes/op");
+        assertThat(holder.getAllocatedBytes() / calls).isZero();
+    }
+
+    private Measurement measure(AuditorAware<String> provider, int calls) {
+        int[] length = new int[1];
+        Measurement measurement = Measurement.of(() -> {
+            for (int i = 0; i < calls; i++) {
+                length[0] += provider.getCurrentAuditor().get().length();
+            }
+        });
+        assertThat(length[0]).isPositive();
+        return measurement;
+    }
+}
@@ -0,0 +1,139 @@
+package study.datajpa.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+//두 개의 H2 메모리 DB 를 primary, replica 로 사용
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.replication.enabled=true",
+        "datajpa.datasource.replication.replicas[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.replication.read-your-writes-window=10s"
+})
+class ReplicationRoutingDataSourceTest {
+    @Autowired private DataSource dataSource;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ReadYourWritesFilter readYourWritesFilter;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+
+    @Test
+    void routeByReadOnly() throws Exception {
+        //쓰기 기록이 없는 새 스레드에서 확인
+        String readOnly = inNewThread(() -> urlInTransaction(true));
+        String readWrite = inNewThread(() -> urlInTransaction(false));
+
+        assertThat(readOnly).contains("replica");
+        assertThat(readWrite).contains("primary");
+    }
+
+    @Test
+    void readYourWrites() throws Exception {
+        String readAfterWrite = inNewThread(() -> {
+            urlInTransaction(false);
+            return urlInTransaction(true);
+        });
+
+        assertThat(readAfterWrite).contains("primary");
+    }
+
+    //비관적 락 조회는 인터페이스의 readOnly 가 아닌 읽기-쓰기 트랜잭션으로 primary 에서 실행된다.
+    //replica 메모리 DB 에는 스키마가 없으므로 replica 로 가면 member 테이블을 찾지 못한다.
+    @Test
+    void pessimisticLockGoesToPrimary() throws Exception {
+        String username = "lock-" + System.nanoTime();
+        Member found = inNewThread(() -> {
+            Team team = teamRepository.save(new Team("lockTeam"));
+            memberRepository.save(Member.createMember(username, 10, team));
+            ReadYourWrites.clear();     //방금 쓴 것 때문에 primary 로 가지 않도록
+            return memberRepository.findLockByUsername(username);
+        });
+
+        assertThat(found).isNotNull();
+        assertThat(found.getUsername()).isEqualTo(username);
+    }
+
+    //요청 안에서는 스레드가 아니라 쿠키를 따라간다. 쓰기 요청과 같은 스레드라도 쿠키가 없는 다른 요청은 replica,
+    //다른 스레드라도 쿠키를 가진 요청은 primary 를 읽는다.
+    @Test
+    void readYourWritesFollowsRequestCookie() throws Exception {
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        String withoutCookie = inNewThread(() -> {
+            inRequest(new MockHttpServletRequest(), writeResponse, () -> urlInTransaction(false));
+            return inRequest(new MockHttpServletRequest(), new MockHttpServletResponse(), () -> urlInTransaction(true));
+        });
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(writeResponse.getHeader(ReadYourWritesFilter.NAME)).isEqualTo(cookie.getValue());
+
+        String withCookie = inNewThread(() -> {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setCookies(cookie);
+            return inRequest(request, new MockHttpServletResponse(), () -> urlInTransaction(true));
+        });
+
+        assertThat(withoutCookie).contains("replica");
+        assertThat(withCookie).contains("primary");
+    }
+
+    //클라이언트가 보낸 값은 window 를 넘지 않게 잘린다.
+    @Test
+    void forgedPrimaryUntilIsCapped() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ReadYourWritesFilter.NAME, String.valueOf(Long.MAX_VALUE));
+        long[] primaryUntil = new long[1];
+        inRequest(request, new MockHttpServletResponse(), () -> {
+            primaryUntil[0] = ReadYourWrites.current().getPrimaryUntil();
+            return null;
+        });
+
+        assertThat(primaryUntil[0]).isLessThanOrEqualTo(System.currentTimeMillis() + 10_000);
+    }
+
+    private String inRequest(MockHttpServletRequest request, MockHttpServletResponse response, Supplier<String> task) {
+        String[] result = new String[1];
+        try {
+            readYourWritesFilter.doFilter(request, response, (req, res) -> result[0] = task.get());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return result[0];
+    }
+
+    //요청 밖의 read-your-writes 는 스레드 별로 기록되므로 테스트 마다 새 스레드를 사용한다.
+    private <T> T inNewThread(Supplier<T> task) throws Exception {
+        return CompletableFuture.supplyAsync(task, runnable -> new Thread(runnable).start()).get();
+    }
+
+    private String urlInTransaction(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                return connection.getMetaData().getURL();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
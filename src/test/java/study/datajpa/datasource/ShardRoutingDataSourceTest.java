@@ -0,0 +1,216 @@
+package study.datajpa.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.outbox.InMemoryOutboxSink;
+import study.datajpa.outbox.OutboxMessage;
+import study.datajpa.outbox.OutboxRelay;
+import study.datajpa.outbox.OutboxSink;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.repository.support.BulkMutation;
+import study.datajpa.repository.support.BulkProgress;
+import study.datajpa.repository.support.ChunkedBulkExecutor;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+//세 개의 H2 메모리 DB 를 샤드로 사용, 테스트 메소드 마다 이름이 다른 팀, 회원을 만들어서 확인한다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.sharding.enabled=true",
+        "datajpa.datasource.sharding.initialize-schema=true",
+        "datajpa.datasource.sharding.shards[0].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.sharding.shards[1].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "datajpa.outbox.relay-enabled=false"
+})
+class ShardRoutingDataSourceTest {
+    private static final int SHARDS = 3;
+
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+    @Autowired private ShardedQueryExecutor shardedQueryExecutor;
+    @Autowired private ChunkedBulkExecutor bulkExecutor;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private DataSource dataSource;
+    @Autowired private OutboxRelay outboxRelay;
+    @Autowired private OutboxSink outboxSink;
+
+    @Test
+    void membersStayOnTeamShard() {
+        //given
+        String prefix = "shard-" + System.nanoTime() + "-";
+        List<Member> members = saveMembers(prefix, 6, 4);
+        List<Team> teams = members.stream().map(Member::getTeam).distinct().collect(Collectors.toList());
+
+        //then, 팀은 샤드에 돌아가면서 배정되고 회원은 팀과 같은 샤드에 저장된다.
+        Set<Integer> used = teams.stream().map(t -> ShardIdGenerator.shardOf(t.getId())).collect(Collectors.toSet());
+        assertThat(used).hasSize(SHARDS);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        for (Team team : teams) {
+            int home = ShardIdGenerator.shardOf(team.getId());
+            for (int shard = 0; shard < SHARDS; shard++) {
+                Integer count = ShardContext.call(shard, () ->
+                        jdbc.queryForObject("select count(*) from member where team_id = ?", Integer.class, team.getId()));
+                assertThat(count).isEqualTo(shard == home ? 4 : 0);
+            }
+        }
+
+        //id 만으로 샤드를 찾아서 조회
+        for (Member member : members) {
+            assertThat(memberRepository.findWithTeamById(member.getId()))
+                    .hasValueSatisfying(found -> assertThat(found.getTeam().getId()).isEqualTo(member.getTeam().getId()));
+        }
+    }
+
+    //호출자의 트랜잭션 안에서 저장하면 insert 는 커밋 때 flush 된다. 그때도 팀의 샤드로 가야 한다.
+    //팀은 샤드에 돌아가면서 배정되므로 SHARDS 번 반복해서 기본 샤드(0)가 아닌 샤드도 확인한다.
+    @Test
+    void saveInsideCallerTransactionGoesToTeamShard() {
+        String prefix = "tx-" + System.nanoTime() + "-";
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Set<Integer> homes = new HashSet<>();
+        for (int t = 0; t < SHARDS; t++) {
+            //when
+            String teamName = prefix + "team" + t;
+            List<Member> members = new TransactionTemplate(transactionManager).execute(status -> {
+                Team team = teamRepository.save(new Team(teamName));
+                return memberRepository.saveAll(IntStream.range(0, 3)
+                        .mapToObj(i -> Member.createMember(teamName + "-" + i, i, team))
+                        .collect(Collectors.toList()));
+            });
+
+            //then, JDBC 로 각 샤드의 row 를 직접 센다.
+            Long teamId = members.get(0).getTeam().getId();
+            int home = ShardIdGenerator.shardOf(teamId);
+            homes.add(home);
+            for (int shard = 0; shard < SHARDS; shard++) {
+                Integer teams = ShardContext.call(shard, () ->
+                        jdbc.queryForObject("select count(*) from team where team_id = ?", Integer.class, teamId));
+                Integer stored = ShardContext.call(shard, () ->
+                        jdbc.queryForObject("select count(*) from member where team_id = ?", Integer.class, teamId));
+                assertThat(teams).isEqualTo(shard == home ? 1 : 0);
+                assertThat(stored).isEqualTo(shard == home ? 3 : 0);
+            }
+        }
+        assertThat(homes).hasSize(SHARDS);
+    }
+
+    //snowflake id 는 연속이 아니므로 chunk 는 id 범위가 아니라 row 수로 나뉘어야 하고, 모든 샤드에서 실행되어야 한다.
+    @Test
+    void chunkedBulkRunsOnEveryShard() {
+        //given
+        String prefix = "chunk-" + System.nanoTime() + "-";
+        List<Member> members = saveMembers(prefix, SHARDS, 10);
+
+        //when
+        BulkProgress result = bulkExecutor.execute(
+                BulkMutation.update(Member.class, "e.age = e.age + 100", "e.username like :prefix").param("prefix", prefix + "%"),
+                0L, 4, progress -> {});
+
+        //then
+        assertThat(result.getAffectedRows()).isEqualTo(members.size());
+        assertThat(result.getChunks()).isLessThan(1000);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Integer notUpdated = ShardContext.call(shard, () -> jdbc.queryForObject(
+                    "select count(*) from member where username like ? and age < 100", Integer.class, prefix + "%"));
+            assertThat(notUpdated).isZero();
+        }
+    }
+
+    //아웃박스 id 는 샤드마다 따로 증가하므로 샤드가 달라도 같은 id 가 나올 수 있다. 메시지는 (shard, id) 로 구분된다.
+    @Test
+    void outboxMessagesCarryShard() {
+        //given
+        InMemoryOutboxSink sink = (InMemoryOutboxSink) outboxSink;
+        outboxRelay.relay();
+        sink.drain();
+        saveMembers("outbox-" + System.nanoTime() + "-", SHARDS, 2);
+
+        //when
+        outboxRelay.relay();
+        List<OutboxMessage> messages = sink.drain();
+
+        //then, 팀 3개 + 회원 6명
+        assertThat(messages).hasSize(SHARDS * 3);
+        assertThat(messages).extracting(OutboxMessage::getShard).containsOnly(0, 1, 2);
+        assertThat(messages.stream().map(m -> m.getShard() + ":" + m.getId()).collect(Collectors.toSet()))
+                .hasSize(messages.size());
+    }
+
+    @Test
+    void scatterGatherWithMergedPaging() {
+        //given
+        String prefix = "gather-" + System.nanoTime() + "-";
+        saveMembers(prefix, 3, 5);
+
+        //when
+        List<MemberDto> all = shardedQueryExecutor.gather(memberRepository::findMemberDto).stream()
+                .filter(dto -> dto.getUsername().startsWith(prefix))
+                .collect(Collectors.toList());
+        List<MemberDto> sorted = shardedQueryExecutor.gather(memberRepository::findMemberDto, Sort.by(Sort.Direction.DESC, "username"));
+        Page<MemberDto> page = shardedQueryExecutor.page(memberRepository::findMemberDtoPage,
+                PageRequest.of(1, 4, Sort.by("username")));
+
+        //then
+        assertThat(all).hasSize(15);
+        assertThat(sorted).isSortedAccordingTo(Comparator.comparing(MemberDto::getUsername).reversed());
+        List<String> expected = sorted.stream().map(MemberDto::getUsername).sorted().skip(4).limit(4).collect(Collectors.toList());
+        assertThat(page.getContent()).extracting(MemberDto::getUsername).containsExactlyElementsOf(expected);
+        assertThat(page.getTotalElements()).isEqualTo(sorted.size());
+    }
+
+    @Test
+    void rejectUnroutableAndCrossShardAccess() {
+        String prefix = "reject-" + System.nanoTime() + "-";
+        List<Member> members = saveMembers(prefix, SHARDS, 1);
+        Member first = members.get(0);
+        Member other = members.stream()
+                .filter(m -> ShardIdGenerator.shardOf(m.getId()) != ShardIdGenerator.shardOf(first.getId()))
+                .findFirst().get();
+
+        //샤드를 알 수 없는 조회
+        assertThatThrownBy(() -> memberRepository.findByUsername(first.getUsername()))
+                .isInstanceOf(IllegalStateException.class);
+        //ShardContext 안에서는 그 샤드에서 조회
+        int home = ShardIdGenerator.shardOf(first.getId());
+        assertThat(ShardContext.call(home, () -> memberRepository.findByUsername(first.getUsername()))).hasSize(1);
+        //한 트랜잭션에서 두 샤드 사용
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.findWithTeamById(first.getId());
+            memberRepository.findWithTeamById(other.getId());
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    //팀 마다 회원 membersPerTeam 명, 회원 이름은 prefix + 팀 번호 + "-" + 회원 번호
+    private List<Member> saveMembers(String prefix, int teamCount, int membersPerTeam) {
+        List<Member> members = new ArrayList<>();
+        for (int t = 0; t < teamCount; t++) {
+            Team team = teamRepository.save(new Team(prefix + "team" + t));
+            int teamNo = t;
+            members.addAll(memberRepository.saveAll(IntStream.range(0, membersPerTeam)
+                    .mapToObj(i -> Member.createMember(prefix + teamNo + "-" + i, i, team))
+                    .collect(Collectors.toList())));
+        }
+        return members;
+    }
+}
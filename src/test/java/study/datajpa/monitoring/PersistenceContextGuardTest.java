@@ -0,0 +1,85 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "datajpa.persistence-context.warn-threshold=50",
+        "datajpa.persistence-context.fail-threshold=200",
+        "datajpa.persistence-context.auto-read-only=true"})
+class PersistenceContextGuardTest {
+    @Autowired private EntityManager em;
+    @Autowired private MeterRegistry registry;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void autoReadOnlyAfterWarnThreshold() {
+        //given
+        String username = saveMembers(60);
+        Member other = memberRepository.save(new Member("guard-other-" + System.nanoTime(), 1));
+        DistributionSummary entities = registry.get("persistence.context.entities").summary();
+        long transactions = entities.count();
+
+        //when
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Member> members = memberRepository.findByUsername(username);   //여기서 warn threshold 를 넘는다.
+            Member loadedAfter = memberRepository.findById(other.getId()).get();
+
+            //then, 넘기 전에 로딩된 엔티티는 그대로 변경 감지, 이후 로딩된 엔티티는 읽기 전용
+            Session session = em.unwrap(Session.class);
+            assertThat(session.isReadOnly(members.get(0))).isFalse();
+            assertThat(session.isReadOnly(loadedAfter)).isTrue();
+        });
+        assertThat(entities.count()).isGreaterThan(transactions);
+        assertThat(entities.max()).isGreaterThanOrEqualTo(61);
+        assertThat(registry.get("persistence.context.snapshot.bytes").summary().max()).isGreaterThan(0);
+    }
+
+    @Test
+    void failThreshold() {
+        //given
+        String username = saveMembers(250);
+
+        //when, then
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> memberRepository.findByUsername(username)))
+                .hasStackTraceContaining("managed entities (limit 200)");
+    }
+
+    @Test
+    void statelessReadIgnoresThreshold() {
+        //given
+        saveMembers(250);
+
+        //when, StatelessSession 은 영속성 컨텍스트가 없어 엔티티 수 제한에 걸리지 않는다.
+        long count = memberRepository.forEachMemberStateless(100, member -> {});
+
+        //then
+        assertThat(count).isGreaterThanOrEqualTo(250);
+    }
+
+    private String saveMembers(int count) {
+        String username = "guard-" + System.nanoTime();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(new Member(username, i));
+        }
+        memberRepository.saveAllBatched(members);
+        return username;
+    }
+}
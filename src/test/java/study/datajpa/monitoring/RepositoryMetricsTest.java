@@ -0,0 +1,97 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class RepositoryMetricsTest {
+    @Autowired private MeterRegistry registry;
+    @Autowired private EntityManager em;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+
+    @Test
+    void repositoryMetrics() {
+        //given
+        Team team = teamRepository.save(new Team("metricsTeam"));
+        String username = "metrics-" + System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(Member.createMember(username, i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //같은 컨텍스트를 쓰는 다른 테스트도 같은 미터에 기록하므로 호출 전, 후의 차이로 확인한다.
+        double[] before = snapshot();
+
+        //when
+        memberRepository.findPageByUsername(username, PageRequest.of(0, 3));
+
+        //then
+        double[] after = snapshot();
+        assertThat(after[0] - before[0]).isEqualTo(1);      //호출 수
+        assertThat(after[1] - before[1]).isEqualTo(2);      //content + count 쿼리
+        assertThat(after[2] - before[2]).isEqualTo(3);      //row 수
+        assertThat(after[3] - before[3]).isEqualTo(3);      //로딩된 엔티티 수
+        assertThat(registry.find("hibernate.flush.duration").timers()).isNotEmpty();
+    }
+
+    //findById 는 CrudRepository 의 같은 Method 이지만 리포지토리 별로 따로 기록되어야 한다.
+    @Test
+    void inheritedMethodsPerRepository() {
+        //given
+        Team team = teamRepository.save(new Team("metricsInheritedTeam"));
+        Member member = memberRepository.save(Member.createMember("metricsInherited", 1, team));
+        em.flush();
+        em.clear();
+        double memberBefore = invocations("MemberRepository", "findById");
+        double teamBefore = invocations("TeamRepository", "findById");
+
+        //when
+        memberRepository.findById(member.getId());
+        teamRepository.findById(team.getId());
+        teamRepository.findById(team.getId());
+
+        //then
+        assertThat(invocations("MemberRepository", "findById") - memberBefore).isEqualTo(1);
+        assertThat(invocations("TeamRepository", "findById") - teamBefore).isEqualTo(2);
+    }
+
+    private double invocations(String repository, String method) {
+        Timer timer = registry.find("repository.invocations")
+                .tags("repository", repository, "method", method, "outcome", "success").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double[] snapshot() {
+        Timer timer = registry.find("repository.invocations")
+                .tags("repository", "MemberRepository", "method", "findPageByUsername", "outcome", "success").timer();
+        return new double[]{
+                timer == null ? 0 : timer.count(),
+                total("repository.statements"),
+                total("repository.rows"),
+                total("repository.entities.loaded")
+        };
+    }
+
+    private double total(String name) {
+        DistributionSummary summary = registry.find(name)
+                .tags("repository", "MemberRepository", "method", "findPageByUsername").summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+}
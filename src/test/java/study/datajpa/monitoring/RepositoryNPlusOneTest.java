@@ -0,0 +1,71 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+//batch fetch 를 끄고 회원 마다 다른 팀을 두어 member.team 지연 로딩이 회원 수 만큼 실행되게 한다.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.default_batch_fetch_size=1")
+class RepositoryNPlusOneTest {
+    private static final int MEMBERS = 20;
+
+    @Autowired private MeterRegistry registry;
+    @Autowired private EntityManagerFactory emf;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+
+    @Test
+    void lazyLoadingAfterRepositoryCallIsSuspected() {
+        //given
+        String username = "nplusone-" + System.nanoTime();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < MEMBERS; i++) {
+                Team team = teamRepository.save(new Team("nplusoneTeam" + i));
+                memberRepository.save(Member.createMember(username, i, team));
+            }
+        });
+        emf.getCache().evict(Team.class);   //2차 캐시에서 팀을 가져오면 select 가 실행되지 않는다.
+        double callBefore = count("findListByUsername", "call");
+        double transactionBefore = count("findListByUsername", "transaction");
+        double fetchJoinBefore = count("findEntityGraphByUsername", "transaction");
+
+        //when
+        //리포지토리 호출은 select 1번, 이후 team 이름을 읽을 때 회원 마다 select
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = memberRepository.findListByUsername(username);
+            members.forEach(m -> m.getTeam().getName());
+        });
+        emf.getCache().evict(Team.class);
+        //fetch join 으로 함께 가져오면 지연 로딩이 없다.
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = memberRepository.findEntityGraphByUsername(username);
+            members.forEach(m -> m.getTeam().getName());
+        });
+
+        //then
+        assertThat(count("findListByUsername", "call") - callBefore).isZero();
+        assertThat(count("findListByUsername", "transaction") - transactionBefore).isEqualTo(1);
+        assertThat(count("findEntityGraphByUsername", "transaction") - fetchJoinBefore).isZero();
+    }
+
+    private double count(String method, String scope) {
+        Counter counter = registry.find("repository.nplusone.suspected")
+                .tags("repository", "MemberRepository", "method", method, "scope", scope).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
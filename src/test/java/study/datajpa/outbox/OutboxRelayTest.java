@@ -0,0 +1,104 @@
+package study.datajpa.outbox;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+//다른 테스트 컨텍스트의 릴레이가 이벤트를 가져가지 않도록 별도 메모리 DB 를 쓰고 릴레이는 직접 호출한다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1",
+        "datajpa.outbox.relay-enabled=false",
+        "datajpa.outbox.batch-size=50",
+        "datajpa.outbox.memory-capacity=120"})
+class OutboxRelayTest {
+    @Autowired private OutboxRelay relay;
+    @Autowired private OutboxSink outboxSink;
+    @Autowired private OutboxEventRepository outboxEventRepository;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    private InMemoryOutboxSink sink;
+
+    @BeforeEach
+    void setUp() {
+        sink = (InMemoryOutboxSink) outboxSink;
+        relay.relay();
+        sink.drain();
+    }
+
+    @Test
+    void writeInSameTransaction() {
+        //given
+        Team team = teamRepository.save(new Team("outboxTeam"));
+        Member member = memberRepository.save(Member.createMember("outbox-" + System.nanoTime(), 10, team));
+
+        //롤백된 트랜잭션의 변경은 아웃박스에도 남지 않는다.
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("rolledBack", 1));
+            status.setRollbackOnly();
+        });
+
+        transactionTemplate.executeWithoutResult(status -> memberRepository.findById(member.getId()).get().changeAge(11));
+        memberRepository.deleteById(member.getId());
+
+        //when
+        int relayed = relay.relay();
+
+        //then
+        List<OutboxMessage> messages = sink.drain();
+        assertThat(relayed).isEqualTo(4);
+        assertThat(messages).extracting(OutboxMessage::getAggregateType, OutboxMessage::getEventType).containsExactly(
+                tuple("Team", OutboxEventType.CREATED),
+                tuple("Member", OutboxEventType.CREATED),
+                tuple("Member", OutboxEventType.UPDATED),
+                tuple("Member", OutboxEventType.DELETED));
+        assertThat(messages.get(2).getPayload())
+                .contains("\\"age\\":11")
+                .contains("\\"teamId\\":" + team.getId());
+        assertThat(outboxEventRepository.findByPublishedAtIsNullOrderByIdAsc(Pageable.unpaged())).isEmpty();
+    }
+
+    @Test
+    void backPressure() {
+        //given, sink 용량(120)보다 많은 이벤트
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            members.add(new Member("backPressure", i));
+        }
+        memberRepository.saveAllBatched(members);
+
+        //when, then
+        //50개 배치 2개를 전달한 뒤 세번째 배치는 sink 가 받지 않아 멈춘다.
+        assertThat(relay.relay()).isEqualTo(100);
+        assertThat(outboxEventRepository.findByPublishedAtIsNullOrderByIdAsc(Pageable.unpaged())).hasSize(100);
+
+        //소비자가 가져가면 backoff 이후 이어서 전달
+        assertThat(sink.drain()).hasSize(100);
+        assertThat(relay.relay()).isEqualTo(100);
+        assertThat(sink.drain()).extracting(OutboxMessage::getAggregateType).containsOnly("Member");
+    }
+
+    //아무도 꺼내지 않는 메모리 sink 로 스케줄러 릴레이를 켜면 기동하지 않는다.
+    @Test
+    void relayEnabledRequiresRealSink() {
+        OutboxProperties properties = new OutboxProperties();
+        properties.setRelayEnabled(true);
+
+        assertThatThrownBy(() -> new OutboxRelay(outboxEventRepository, new InMemoryOutboxSink(10), properties, transactionManager, null))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,74 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.dto.MemberDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+//비동기 조회는 다른 스레드의 트랜잭션에서 실행되므로 테스트 데이터는 커밋되어 있어야 한다.
+@SpringBootTest
+class MemberRepositoryAsyncTest {
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+
+    @Test
+    void fanOut() throws Exception {
+        //given
+        Team team = teamRepository.save(new Team("asyncTeam"));
+        String username = "async-" + System.nanoTime();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            members.add(Member.createMember(username, 77, team));
+        }
+        memberRepository.saveAllBatched(members);
+        PageRequest pageRequest = PageRequest.of(0, 20);
+
+        //when
+        //요청 하나에서 서로 독립적인 조회 세 개를 순서대로 실행 vs 동시에 실행
+        for (int i = 0; i < 5; i++) {   //warm up
+            sequential(username, pageRequest);
+            parallel(username, pageRequest);
+        }
+        long start = System.nanoTime();
+        sequential(username, pageRequest);
+        long sequentialNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Object[] results = parallel(username, pageRequest);
+        long parallelNanos = System.nanoTime() - start;
+
+        System.out.println("fan-out latency -> sequential: " + sequentialNanos / 1000 + "us, async: " + parallelNanos / 1000 + "us");
+
+        //then
+        Page<Member> page = (Page<Member>) results[1];
+        List<Member> byUsername = (List<Member>) results[2];
+        assertThat((List<MemberDto>) results[0]).extracting(MemberDto::getUsername).contains(username);
+        assertThat(page.getContent()).hasSize(20).allMatch(m -> m.getTeam().getName() != null);
+        assertThat(byUsername).hasSize(500);
+    }
+
+    private Object[] sequential(String username, PageRequest pageRequest) {
+        return new Object[]{
+                memberRepository.findMemberDto(),
+                memberRepository.findAsyncByAge(77, pageRequest).join(),
+                memberRepository.findByUsername(username)
+        };
+    }
+
+    private Object[] parallel(String username, PageRequest pageRequest) {
+        CompletableFuture<List<MemberDto>> dtos = memberRepository.findMemberDtoAsync();
+        CompletableFuture<Page<Member>> page = memberRepository.findAsyncByAge(77, pageRequest);
+        CompletableFuture<List<Member>> byUsername = memberRepository.findAsyncByUsername(username);
+        return new Object[]{dtos.join(), page.join(), byUsername.join()};
+    }
+}
@@ -1,22 +1,32 @@
 package study.datajpa.repository;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.Measurement;
 import study.datajpa.domain.Member;
 import study.datajpa.domain.Team;
 import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberReadModel;
+import study.datajpa.dto.MemberSummary;
+import study.datajpa.dto.MemberSummaryDto;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -216,4 +226,270 @@ class MemberRepositoryTest {
         Thread.sleep(1000);
         member.changeName("memberB");
     }
-}
\ No newline at end of file
+
+    @Test
+    void keysetPaging(){
+        //given
+        Team team = new Team("keysetTeam");
+        teamRepository.save(team);
+        String username = "keyset-" + System.nanoTime();
+        int total = 2000, size = 20;
+        for (int i = 0; i < total; i++) {
+            memberRepository.save(Member.createMember(username, i % 50, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<Long> ids = new ArrayList<>();
+        String token = null;
+        long keysetLast = 0;
+        do {
+            long start = System.nanoTime();
+            Window<Member> window = memberRepository.findWindowByUsername(username, token, size);
+            keysetLast = System.nanoTime() - start;
+            window.getContent().forEach(m -> ids.add(m.getId()));
+            token = window.getNextToken();
+        } while (token != null);
+
+        long start = System.nanoTime();
+        Page<Member> offsetLast = memberRepository.findPageByUsername(username,
+                PageRequest.of(total / size - 1, size, Sort.by(Sort.Direction.ASC, "id")));
+        long offsetLastNanos = System.nanoTime() - start;
+        System.out.println("last page latency -> keyset: " + keysetLast / 1000 + "us, offset: " + offsetLastNanos / 1000 + "us");
+
+        //then
+        assertThat(ids).hasSize(total).doesNotHaveDuplicates().isSorted();
+        assertThat(offsetLast.getContent()).extracting(Member::getId).isEqualTo(ids.subList(total - size, total));
+    }
+
+    //예외로 테스트 트랜잭션이 rollback-only 가 되지 않도록 트랜잭션 없이 실행
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void keysetPagingRejectsInvalidSize(){
+        assertThatThrownBy(() -> memberRepository.findWindowByUsername("keyset", null, 0))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberRepository.findWindowByAge(null, -1))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatIllegalArgumentException().isThrownBy(() -> Window.of(List.of(), 0, m -> new Object[0]));
+    }
+
+    @Test
+    void forEachMemberChunk(){
+        //given
+        Team team = new Team("streamTeam");
+        teamRepository.save(team);
+        for (int i = 0; i < 1000; i++) {
+            memberRepository.save(Member.createMember("stream" + i, i % 100, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        //실제 export 는 수백만 row 를 대상으로 하지만, 힙이 평평하게 유지되는지는 chunk 당 영속성 컨텍스트 크기로 확인한다.
+        int chunkSize = 100;
+        Session session = em.unwrap(Session.class);
+        AtomicInteger maxManaged = new AtomicInteger();
+        long count = memberRepository.forEachMemberChunk(50, chunkSize, chunk -> {
+            assertThat(chunk.size()).isLessThanOrEqualTo(chunkSize);
+            maxManaged.accumulateAndGet(session.getStatistics().getEntityCount(), Math::max);
+        });
+
+        //then
+        assertThat(count).isGreaterThanOrEqualTo(1000);
+        assertThat(maxManaged.get()).isLessThanOrEqualTo(chunkSize);
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    void forEachMemberChunkKeepsCallerPersistenceContext(){
+        //given
+        Team team = new Team("chunkCallerTeam");
+        teamRepository.save(team);
+        for (int i = 0; i < 30; i++) {
+            memberRepository.save(Member.createMember("chunkCaller" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+        Team callerTeam = teamRepository.findById(team.getId()).get();
+        Member callerMember = memberRepository.findByUsername("chunkCaller0").get(0);
+
+        //when
+        //호출한 쪽 트랜잭션에 참여하므로 같은 영속성 컨텍스트를 쓴다. chunk 의 엔티티만 비워져야 한다.
+        Session session = em.unwrap(Session.class);
+        AtomicInteger maxManaged = new AtomicInteger();
+        memberRepository.forEachMemberChunk(10, 10,
+                chunk -> maxManaged.accumulateAndGet(session.getStatistics().getEntityCount(), Math::max));
+
+        //then
+        assertThat(maxManaged.get()).isLessThanOrEqualTo(10 + 2);
+        assertThat(em.contains(callerTeam)).isTrue();
+        assertThat(em.contains(callerMember)).isTrue();
+
+        //호출한 쪽 엔티티의 변경 감지도 그대로 동작
+        callerMember.changeName("chunkCallerRenamed");
+        em.flush();
+        em.clear();
+        assertThat(memberRepository.findById(callerMember.getId()).get().getUsername()).isEqualTo("chunkCallerRenamed");
+    }
+
+    @Test
+    void saveAllBatched(){
+        //given
+        Team team = new Team("batchTeam");
+        teamRepository.save(team);
+        em.flush();
+        int rows = 2000;
+
+        //when
+        List<Member> plain = new ArrayList<>();
+        List<Member> batched = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            plain.add(Member.createMember("saveAll", i % 100, team));
+            batched.add(Member.createMember("saveAllBatched", i % 100, team));
+        }
+
+        long start = System.nanoTime();
+        memberRepository.saveAll(plain);
+        em.flush();
+        long plainNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Member> saved = memberRepository.saveAllBatched(batched);
+        long batchedNanos = System.nanoTime() - start;
+
+        System.out.println("saveAll -> " + rows * 1_000_000_000L / plainNanos + " rows/sec");
+        System.out.println("saveAllBatched -> " + rows * 1_000_000_000L / batchedNanos + " rows/sec");
+
+        //then
+        assertThat(saved).hasSize(rows).allMatch(m -> m.getId() != null);
+        assertThat(em.contains(saved.get(0))).isFalse();
+        //호출한 쪽이 들고 있던 엔티티는 비워지지 않는다.
+        assertThat(em.contains(team)).isTrue();
+        assertThat(em.contains(plain.get(0))).isTrue();
+    }
+
+    //예외로 테스트 트랜잭션이 rollback-only 가 되지 않도록 트랜잭션 없이 실행, 저장은 리포지토리 트랜잭션에서 커밋된다.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void saveAllBatchedRejectsExistingEntities(){
+        //given
+        Team team = teamRepository.save(new Team("batchRejectTeam"));
+        Member existing = memberRepository.save(Member.createMember("batchExisting", 1, team));
+        Member fresh = Member.createMember("batchFresh", 2, team);
+
+        //when, then, 아무것도 저장하지 않는다. (IllegalArgumentException 은 리포지토리 프록시가 변환한다)
+        assertThatThrownBy(() -> memberRepository.saveAllBatched(List.of(fresh, existing)))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(fresh.getId()).isNull();
+    }
+
+    @Test
+    void projections(){
+        //given
+        Team team = new Team("projectionTeam");
+        teamRepository.save(team);
+        String username = "projection-" + System.nanoTime();
+        int rows = 500;
+        for (int i = 0; i < rows; i++) {
+            memberRepository.save(Member.createMember(username, i, team));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<MemberSummary> summaries = memberRepository.findSummaryByUsername(username);
+        List<MemberSummaryDto> dtos = memberRepository.findByUsername(username, MemberSummaryDto.class);
+        Page<MemberSummary> page = memberRepository.findSummaryPageByUsername(username, PageRequest.of(0, 10, Sort.by("age")));
+
+        //then
+        assertThat(summaries).hasSize(rows);
+        assertThat(dtos).extracting(MemberSummaryDto::getUsername).containsOnly(username);
+        assertThat(page.getTotalElements()).isEqualTo(rows);
+        assertThat(page.getContent()).extracting(MemberSummary::getAge).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+        //엔티티 조회 vs Projection, row 당 할당 바이트와 지연시간 비교
+        for (int i = 0; i < 5; i++) {   //warm up
+            measure(() -> memberRepository.findByUsername(username));
+            measure(() -> memberRepository.findByUsername(username, MemberSummaryDto.class));
+        }
+        Measurement entity = measure(() -> memberRepository.findByUsername(username));
+        Measurement projection = measure(() -> memberRepository.findByUsername(username, MemberSummaryDto.class));
+        System.out.println("entity -> " + entity.getAllocatedBytes() / rows + " bytes/row, " + entity.getElapsedNanos() / 1000 + "us");
+        System.out.println("projection -> " + projection.getAllocatedBytes() / rows + " bytes/row, " + projection.getElapsedNanos() / 1000 + "us");
+    }
+
+    //매번 영속성 컨텍스트를 비워 엔티티 조회도 새로 hydrate 되도록 한다.
+    private Measurement measure(Runnable query) {
+        return Measurement.of(() -> {
+            query.run();
+            em.clear();
+        });
+    }
+
+    @Test
+    void pagingCountMode(){
+        //given
+        Team team = new Team("countTeam");
+        teamRepository.save(team);
+        String username = "count-" + System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            memberRepository.save(Member.createMember(username, i, team));
+        }
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by("age"));
+
+        //when
+        Page<Member> approximate = memberRepository.findPageByUsername(username, pageRequest, CountMode.APPROXIMATE);
+        Page<Member> cached = memberRepository.findPageByUsername(username, pageRequest, CountMode.CACHED);
+        memberRepository.save(Member.createMember(username, 100, team));
+        Page<Member> cachedAgain = memberRepository.findPageByUsername(username, pageRequest, CountMode.CACHED);
+        Page<Member> exact = memberRepository.findPageByUsername(username, pageRequest, CountMode.EXACT);
+        Page<Member> lastPage = memberRepository.findPageByUsername(username, PageRequest.of(3, 3, Sort.by("age")), CountMode.EXACT);
+
+        //then
+        //캐시된 값이 없을 때 APPROXIMATE 는 다음 페이지가 있다는 것만 알 수 있다.
+        assertThat(approximate.getContent()).extracting(Member::getAge).containsExactly(0, 1, 2);
+        assertThat(approximate.getTotalElements()).isEqualTo(4);
+        assertThat(approximate.hasNext()).isTrue();
+
+        //TTL 이내에는 새로 추가된 회원이 totalCount 에 반영되지 않는다.
+        assertThat(cached.getTotalElements()).isEqualTo(10);
+        assertThat(cachedAgain.getTotalElements()).isEqualTo(10);
+        assertThat(exact.getTotalElements()).isEqualTo(11);
+        assertThat(memberRepository.findPageByUsername(username, pageRequest, CountMode.APPROXIMATE).getTotalElements()).isEqualTo(10);
+
+        //마지막 페이지는 count 없이 계산
+        assertThat(lastPage.getContent()).hasSize(2);
+        assertThat(lastPage.getTotalElements()).isEqualTo(11);
+    }
+
+    @Test
+    void findReadModelsByUsername() {
+        //given, findByUsername 과 같은 데이터
+        Member memberA = new Member("memberA", 10);
+        Member memberB = new Member("memberB", 20);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+
+        //when
+        List<MemberReadModel> readModels = memberRepository.findReadModelsByUsername("memberA");
+        List<Member> members = memberRepository.findByUsername("memberA");
+
+        //then, JPA 경로와 같은 row 를 같은 값으로 반환해야 한다.
+        assertThat(readModels).extracting(MemberReadModel::getId, MemberReadModel::getUsername, MemberReadModel::getAge)
+                .containsExactlyInAnyOrderElementsOf(members.stream()
+                        .map(m -> tuple(m.getId(), m.getUsername(), m.getAge()))
+                        .collect(Collectors.toList()));
+        assertThat(readModels).extracting(MemberReadModel::getId).contains(memberA.getId());
+
+        String unique = "readModel-" + System.nanoTime();
+        Team team = teamRepository.save(new Team("readModelTeam"));
+        memberRepository.save(Member.createMember(unique, 30, team));
+        assertThat(memberRepository.findReadModelByUsername(unique))
+                .hasValueSatisfying(m -> assertThat(m.getTeamId()).isEqualTo(team.getId()));
+        assertThat(memberRepository.findReadModelByUsername(unique + "-none")).isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.domain.Member;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+class QueryPlanCacheTest {
+    @Autowired private EntityManagerFactory emf;
+    @Autowired private MeterRegistry registry;
+    @Autowired private MemberRepository memberRepository;
+
+    @Test
+    void inClauseParameterPadding() {
+        //given
+        String prefix = "plan-" + System.nanoTime() + "-";
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            members.add(new Member(prefix + i, i));
+        }
+        memberRepository.saveAllBatched(members);
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        //when, in 절 파라미터 수를 1 ~ 100 개로 바꿔가며 조회
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            usernames.add(prefix + i);
+            assertThat(memberRepository.findByUsernameIn(usernames)).hasSize(i + 1);
+        }
+
+        //then, padding 이 없으면 파라미터 수 마다 plan 이 하나씩(100개) 생긴다.
+        //padding 하면 1, 2, 4, ..., 128 의 8개 + 원본 JPQL 1개로 고정된다.
+        //아웃박스 릴레이 등 백그라운드 쿼리의 plan 과 섞이지 않도록 이 쿼리의 plan 만 센다.
+        long plans = Arrays.stream(statistics.getQueries())
+                .filter(query -> query.startsWith("select m from Member m where m.username in"))
+                .count();
+        assertThat(plans).isLessThanOrEqualTo(9);
+        assertThat(registry.get("hibernate.query.plan.cache.hit.ratio").gauge().value()).isBetween(0.0, 1.0);
+    }
+}
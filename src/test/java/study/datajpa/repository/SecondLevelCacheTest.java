@@ -0,0 +1,102 @@
+package study.datajpa.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+//2차 캐시, 쿼리 캐시는 트랜잭션이 커밋된 후에 공유되므로 테스트 전체를 하나의 트랜잭션으로 묶지 않는다.
+@SpringBootTest
+class SecondLevelCacheTest {
+    @Autowired private EntityManagerFactory emf;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void teamEntityCache() {
+        //given
+        Team team = teamRepository.save(new Team("cachedTeam"));
+
+        //when
+        teamRepository.findById(team.getId());
+        long hits = statistics.getSecondLevelCacheHitCount();
+        teamRepository.findById(team.getId());
+
+        //then
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThan(hits);
+    }
+
+    //members 는 mappedBy 쪽(inverse) 컬렉션이라 Member 변경으로 캐시가 갱신되지 않는다. auto_evict_collection_cache 로 비운다.
+    @Test
+    void membersCollectionCacheEvictedWhenMemberMovesOrIsDeleted() {
+        //given
+        Team teamA = teamRepository.save(new Team("cachedTeamA"));
+        Team teamB = teamRepository.save(new Team("cachedTeamB"));
+        Member moved = memberRepository.save(Member.createMember("moved-" + System.nanoTime(), 10, teamA));
+        Member deleted = memberRepository.save(Member.createMember("deleted-" + System.nanoTime(), 20, teamA));
+        assertThat(memberIds(teamA.getId())).containsExactlyInAnyOrder(moved.getId(), deleted.getId());   //컬렉션 캐시에 저장
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.findById(moved.getId()).orElseThrow().changeTeam(teamRepository.findById(teamB.getId()).orElseThrow());
+            memberRepository.deleteById(deleted.getId());
+        });
+
+        //then
+        assertThat(memberIds(teamA.getId())).isEmpty();
+        assertThat(memberIds(teamB.getId())).containsExactly(moved.getId());
+    }
+
+    private List<Long> memberIds(Long teamId) {
+        return transactionTemplate.execute(status -> teamRepository.findById(teamId).orElseThrow().getMembers().stream()
+                .map(Member::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void queryCacheInvalidatedByBulkUpdate() {
+        //given
+        String username = "cached-" + System.nanoTime();
+        Team team = teamRepository.save(new Team("cachedTeam"));
+        memberRepository.save(Member.createMember(username, 200, team));
+        memberRepository.findByUsername(username);
+
+        //when
+        long hits = statistics.getQueryCacheHitCount();
+        List<Member> cached = memberRepository.findByUsername(username);
+
+        //then
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hits + 1);
+        assertThat(cached.get(0).getAge()).isEqualTo(200);
+
+        //when
+        //벌크 연산 이후에는 캐시된 결과가 아니라 변경된 값을 읽어야 한다.
+        memberRepository.bulkAgePlus(200);
+        List<Member> updated = memberRepository.findByUsername(username);
+
+        //then
+        assertThat(updated.get(0).getAge()).isEqualTo(201);
+    }
+}
@@ -0,0 +1,85 @@
+package study.datajpa.repository;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+    @Autowired private EntityManager em;
+    @Autowired private TeamRepository teamRepository;
+    @Autowired private MemberRepository memberRepository;
+
+    private Statistics statistics;
+    private final List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 10; i++) {
+            Team team = teamRepository.save(new Team("team" + i));
+            teamIds.add(team.getId());
+            for (int j = 0; j < 3; j++) {
+                memberRepository.save(Member.createMember("member" + i + "_" + j, j * 10, team));
+            }
+        }
+        em.flush();
+        em.clear();
+
+        statistics = em.unwrap(Session.class).getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @Test
+    void batchFetchMembers() {
+        //when, 공유 DB 의 다른 팀이 섞이지 않도록 이 테스트가 만든 팀만 조회
+        List<Team> teams = teamRepository.findAllById(teamIds);
+        teams.forEach(t -> t.getMembers().size());
+
+        //then
+        //team 조회 1번 + members in 쿼리 1번, Team 수만큼 늘어나면 N+1 이 다시 생긴 것
+        assertThat(teams).hasSize(teamIds.size()).allSatisfy(t -> assertThat(t.getMembers()).hasSize(3));
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void findAllWithMembers() {
+        //when
+        List<Team> teams = teamRepository.findAllWithMembers();
+        teams.forEach(t -> t.getMembers().size());
+
+        //then
+        assertThat(teams).doesNotHaveDuplicates();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findPageWithMembers() {
+        //when
+        Page<Team> page = teamRepository.findPageWithMembers(PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "name")));
+
+        //then
+        //id 페이지 + count + fetch join
+        assertThat(page.getContent()).hasSize(3).allMatch(t -> Hibernate.isInitialized(t.getMembers()));
+        assertThat(page.getContent()).extracting(Team::getName).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+}
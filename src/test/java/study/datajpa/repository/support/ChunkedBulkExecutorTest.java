@@ -0,0 +1,79 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+//chunk 마다 커밋되는 것을 확인해야 하므로 테스트 메소드를 트랜잭션으로 묶지 않는다.
+@SpringBootTest
+class ChunkedBulkExecutorTest {
+    @Autowired private ChunkedBulkExecutor bulkExecutor;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+
+    @Test
+    void chunkedUpdateWithResume() {
+        //given
+        Team team = teamRepository.save(new Team("bulkTeam"));
+        String username = "bulk-" + System.nanoTime();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(Member.createMember(username, 10, team));
+        }
+        memberRepository.saveAllBatched(members);
+        long fromId = members.get(0).getId();
+        BulkMutation agePlus = BulkMutation.update(Member.class, "e.age = e.age + 1", "e.username = :username")
+                .param("username", username);
+
+        //when
+        //두번째 chunk 가 커밋된 뒤 중단
+        AtomicReference<BulkProgress> last = new AtomicReference<>();
+        assertThatThrownBy(() -> bulkExecutor.execute(agePlus, fromId, 50, progress -> {
+            last.set(progress);
+            if (progress.getChunks() == 2) throw new IllegalStateException("stop");
+        })).isInstanceOf(IllegalStateException.class);
+
+        //마지막으로 받은 위치부터 다시 실행
+        BulkProgress resumed = bulkExecutor.execute(agePlus, last.get().getNextId(), 50, progress -> {});
+
+        //then
+        //중단 전, 후에 처리한 row 가 겹치거나 빠지지 않아야 한다.
+        assertThat(last.get().getAffectedRows() + resumed.getAffectedRows()).isEqualTo(250);
+        List<Member> updated = memberRepository.findByUsername(username);
+        assertThat(updated).hasSize(250).allMatch(m -> m.getAge() == 11);
+        assertThat(updated).allMatch(m -> m.getLastModifiedBy() != null && m.getVersion() == 1L);
+    }
+
+    @Test
+    void chunkedDelete() {
+        //given
+        Team team = teamRepository.save(new Team("bulkTeam"));
+        String username = "bulkDelete-" + System.nanoTime();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            members.add(Member.createMember(username, i, team));
+        }
+        memberRepository.saveAllBatched(members);
+
+        //when
+        List<BulkProgress> progresses = new ArrayList<>();
+        BulkProgress result = bulkExecutor.execute(
+                BulkMutation.delete(Member.class, "e.username = :username and e.age < 100").param("username", username),
+                members.get(0).getId(), 50, progresses::add);
+
+        //then
+        assertThat(result.getAffectedRows()).isEqualTo(100);
+        assertThat(progresses).hasSize(result.getChunks());
+        assertThat(memberRepository.findByUsername(username)).hasSize(20);
+    }
+}
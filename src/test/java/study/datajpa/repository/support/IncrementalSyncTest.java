@@ -0,0 +1,72 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Tombstone;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.Watermark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+//동기화는 chunk 마다 자기 트랜잭션으로 읽으므로 테스트 메소드를 트랜잭션으로 묶지 않는다.
+//다른 테스트가 남긴 데이터와 섞이지 않도록 저장 직전 시각부터 읽고 이 테스트의 회원만 확인한다.
+@SpringBootTest
+class IncrementalSyncTest {
+    @Autowired private IncrementalSync incrementalSync;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void syncChangesAndDeletesSinceWatermark() {
+        //given
+        String prefix = "sync-" + System.nanoTime() + "-";
+        LocalDateTime start = LocalDateTime.now().minusSeconds(1);
+        List<Member> saved = memberRepository.saveAll(IntStream.range(0, 250)
+                .mapToObj(i -> new Member(prefix + i, i % 50))
+                .collect(Collectors.toList()));
+        Set<Long> ids = saved.stream().map(Member::getId).collect(Collectors.toSet());
+
+        //when, 처음 동기화
+        List<Long> synced = new ArrayList<>();
+        Watermark watermark = incrementalSync.forEachChanged(memberRepository::findChangedSince,
+                new Watermark(start, 0L), LocalDateTime.now(), 30, chunk -> chunk.stream()
+                        .filter(m -> m.getUsername().startsWith(prefix))
+                        .forEach(m -> synced.add(m.getId())));
+
+        //then, 누락, 중복 없이 모두 읽는다.
+        assertThat(synced).hasSize(250).doesNotHaveDuplicates();
+        assertThat(synced).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(Watermark.fromToken(watermark.toToken())).isEqualTo(watermark);
+
+        //when, 3명 수정, 2명 삭제 후 이어서 동기화
+        List<Long> updatedIds = saved.subList(0, 3).stream().map(Member::getId).collect(Collectors.toList());
+        List<Long> deletedIds = saved.subList(3, 5).stream().map(Member::getId).collect(Collectors.toList());
+        LocalDateTime beforeChange = LocalDateTime.now().minusSeconds(1);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.findAllById(updatedIds).forEach(m -> m.changeAge(m.getAge() + 100));
+            memberRepository.findAllById(deletedIds).forEach(memberRepository::delete);
+        });
+
+        List<Long> changed = new ArrayList<>();
+        incrementalSync.forEachChanged(memberRepository::findChangedSince, watermark, LocalDateTime.now(), 30,
+                chunk -> chunk.stream().filter(m -> ids.contains(m.getId())).forEach(m -> changed.add(m.getId())));
+        List<Long> deleted = new ArrayList<>();
+        incrementalSync.forEachDeleted(Member.class, new Watermark(beforeChange, 0L), LocalDateTime.now(), 30,
+                chunk -> chunk.stream().map(Tombstone::getEntityId).filter(ids::contains).forEach(deleted::add));
+
+        //then, 변경분만 읽는다.
+        assertThat(changed).containsExactlyInAnyOrderElementsOf(updatedIds);
+        assertThat(deleted).containsExactlyInAnyOrderElementsOf(deletedIds);
+    }
+}
@@ -0,0 +1,51 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+class IndexAdvisorTest {
+    @Autowired private IndexAdvisor indexAdvisor;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void requiredIndexes() {
+        //when
+        List<IndexAdvisor.Recommendation> required = indexAdvisor.requiredIndexes();
+
+        //then, 메소드 이름 쿼리와 @Query 모두에서 컬럼을 찾는다.
+        assertThat(required).extracting(r -> r.getTable() + r.getColumns())
+                .contains("member[username, age]", "member[username, member_id]", "member[age]", "team[name]");
+        assertThat(required).filteredOn(r -> r.getColumns().equals(List.of("username", "age")))
+                .flatExtracting(IndexAdvisor.Recommendation::getSources)
+                .contains("MemberRepository.findByUsernameAndAgeGreaterThan", "MemberRepository.findUser");
+    }
+
+    @Test
+    void entityIndexesCoverRepositoryQueries() throws Exception {
+        assertThat(indexAdvisor.recommend()).isEmpty();
+    }
+
+    @Test
+    void missingIndex() throws Exception {
+        //given
+        jdbcTemplate.execute("drop index idx_member_age");
+        try {
+            //when
+            List<IndexAdvisor.Recommendation> missing = indexAdvisor.recommend();
+
+            //then
+            assertThat(missing).extracting(IndexAdvisor.Recommendation::ddl)
+                    .containsExactly("create index idx_member_age on member (age);");
+            assertThat(missing.get(0).getSources()).contains("MemberRepository.bulkAgePlus", "MemberRepository.findKeysetByAge");
+        } finally {
+            jdbcTemplate.execute("create index idx_member_age on member (age)");
+        }
+    }
+}
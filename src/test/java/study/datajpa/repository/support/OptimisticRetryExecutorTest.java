@@ -0,0 +1,78 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+//여러 스레드가 각자의 트랜잭션으로 같은 회원을 수정해야 하므로 테스트 메소드를 트랜잭션으로 묶지 않는다.
+@SpringBootTest
+class OptimisticRetryExecutorTest {
+    private static final int THREADS = 4;
+    private static final int UPDATES_PER_THREAD = 25;
+
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamRepository teamRepository;
+    @Autowired private OptimisticRetryExecutor retryExecutor;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void optimisticRetryVsPessimisticLock() throws Exception {
+        //given
+        Team team = teamRepository.save(new Team("hotTeam"));
+        Member optimistic = memberRepository.save(Member.createMember("optimistic-" + System.nanoTime(), 0, team));
+        Member pessimistic = memberRepository.save(Member.createMember("pessimistic-" + System.nanoTime(), 0, team));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        //when
+        long optimisticNanos = contend(() -> retryExecutor.execute(50, () -> {
+            Member m = memberRepository.findById(optimistic.getId()).get();
+            m.changeAge(m.getAge() + 1);
+            return m;
+        }));
+        long pessimisticNanos = contend(() -> tx.execute(status -> {
+            Member m = memberRepository.findLockByUsername(pessimistic.getUsername());
+            m.changeAge(m.getAge() + 1);
+            return m;
+        }));
+
+        int total = THREADS * UPDATES_PER_THREAD;
+        System.out.println("optimistic + retry -> " + total * 1_000_000_000L / optimisticNanos + " updates/sec");
+        System.out.println("pessimistic lock -> " + total * 1_000_000_000L / pessimisticNanos + " updates/sec");
+
+        //then
+        //유실된 갱신 없이 모든 수정이 반영되어야 한다.
+        assertThat(memberRepository.findById(optimistic.getId()).get().getAge()).isEqualTo(total);
+        assertThat(memberRepository.findById(pessimistic.getId()).get().getAge()).isEqualTo(total);
+    }
+
+    private long contend(Runnable update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < UPDATES_PER_THREAD; j++) update.run();
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,56 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+//lazy 모드에서는 리포지토리가 처음 사용될 때 만들어지므로 warm up 이 백그라운드에서 미리 만들어 둔다.
+@SpringBootTest(properties = {
+        "spring.data.jpa.repositories.bootstrap-mode=lazy",
+        "datajpa.startup.warmup=true"})
+class RepositoryWarmupTest {
+    //MemberRepository, TeamRepository 의 @Query 와 같은 문자열
+    private static final String FIND_USER = "select m from Member m where m.username = :username and m.age > :age";
+    private static final String FIND_KEYSET_BY_AGE = "select m from Member m where m.age > :lastAge or (m.age = :lastAge and m.id > :lastId)" +
+            " order by m.age asc, m.id asc";
+    private static final String FIND_ALL_WITH_MEMBERS = "select distinct t from Team t left join fetch t.members";
+
+    @Autowired private RepositoryWarmup warmup;
+    @Autowired private EntityManagerFactory emf;
+
+    @Test
+    void warmUpInBackground() {
+        //when
+        RepositoryWarmup.Result result = warmup.awaitCompletion();
+
+        //then
+        assertThat(result.getWarmed()).contains(
+                "MemberRepository.findUser",
+                "MemberRepository.findKeysetByAge",
+                "MemberRepository.findPageByUsername",
+                "MemberRepository.findMembers",
+                "TeamRepository.findAllWithMembers");
+        //변경, 락, 비동기 메소드와 결과 수가 제한되지 않는 메소드 이름 쿼리는 실행하지 않는다.
+        assertThat(result.getSkipped()).contains(
+                "MemberRepository.bulkAgePlus",
+                "MemberRepository.findLockByUsername",
+                "MemberRepository.findAsyncByUsername",
+                "MemberRepository.findByUsername",
+                "TeamRepository.findEntityGraphByName");
+        assertThat(result.getFailed()).isEmpty();
+
+        //warm up 이 @Query 의 JPQL 을 실제로 실행해서 plan 이 만들어져 있다. 이후 같은 JPQL 은 이 plan 을 재사용
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        assertThat(statistics.getQueries()).contains(FIND_USER, FIND_KEYSET_BY_AGE);
+        //결과 수가 제한되지 않는 @Query 는 plan 만 만들고 실행하지 않는다.
+        assertThat(statistics.getQueries()).doesNotContain(FIND_ALL_WITH_MEMBERS);
+        assertThat(statistics.getQueryStatistics(FIND_USER).getExecutionCount()).isGreaterThan(0);
+        assertThat(statistics.getQueryStatistics(FIND_KEYSET_BY_AGE).getExecutionCount()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,143 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.domain.Team;
+import study.datajpa.dto.TeamAgeStats;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+//집계는 커밋 직전에 반영되므로 테스트 메소드를 트랜잭션으로 묶지 않는다.
+//매번 member 테이블을 group by 한 결과(전체 재계산)와 집계 테이블을 비교한다.
+@SpringBootTest
+class TeamAgeStatsTest {
+    @Autowired private TeamRepository teamRepository;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private TeamAgeStatsReconciler reconciler;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void followsMemberChanges() {
+        //given
+        Team teamA = teamRepository.save(new Team("statsA"));
+        Team teamB = teamRepository.save(new Team("statsB"));
+        List<Member> members = memberRepository.saveAll(List.of(
+                Member.createMember("a1", 10, teamA),
+                Member.createMember("a2", 15, teamA),
+                Member.createMember("a3", 27, teamA),
+                Member.createMember("b1", 30, teamB),
+                Member.createMember("b2", 30, teamB)));
+        assertConsistent(teamA.getId(), teamB.getId());
+
+        //when, 나이 변경, 팀 이동, 삭제를 한 트랜잭션에서
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.findById(members.get(1).getId()).orElseThrow().changeAge(16);
+            memberRepository.findById(members.get(2).getId()).orElseThrow()
+                    .changeTeam(teamRepository.findById(teamB.getId()).orElseThrow());
+            memberRepository.deleteById(members.get(3).getId());
+        });
+
+        //then
+        assertConsistent(teamA.getId(), teamB.getId());
+        TeamAgeStats statsA = teamRepository.findAgeStats(teamA.getId());
+        assertThat(statsA.getMemberCount()).isEqualTo(2);
+        assertThat(statsA.getMinAge()).isEqualTo(10);
+        assertThat(statsA.getMaxAge()).isEqualTo(16);
+        assertThat(statsA.getAverageAge()).isEqualTo(13.0);
+        assertThat(statsA.getHistogram()).containsExactly(entry(10, 2L));
+        assertThat(teamRepository.findAgeStats(teamB.getId()).getHistogram()).containsExactly(entry(20, 1L), entry(30, 1L));
+
+        //롤백된 변경은 반영되지 않는다.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.findById(members.get(0).getId()).orElseThrow().changeAge(99);
+            memberRepository.flush();
+            status.setRollbackOnly();
+        });
+        assertConsistent(teamA.getId(), teamB.getId());
+    }
+
+    @Test
+    void reconcilesAfterBulkUpdate() {
+        //given, 다른 테스트의 회원이 벌크 연산 대상이 되지 않도록 큰 나이를 사용
+        Team team = teamRepository.save(new Team("statsBulk"));
+        memberRepository.saveAll(List.of(
+                Member.createMember("bulk1", 9000, team),
+                Member.createMember("bulk2", 9005, team)));
+
+        //when, 벌크 연산은 엔티티 이벤트가 없다.
+        memberRepository.bulkAgePlus(9000);
+
+        //then
+        assertConsistent(team.getId());
+        assertThat(teamRepository.findAgeStats(team.getId()).getMinAge()).isEqualTo(9001);
+    }
+
+    @Test
+    void reconcilesAfterCommitOfCallerTransaction() {
+        //given
+        Team team = teamRepository.save(new Team("statsBulkTx"));
+        memberRepository.saveAll(List.of(
+                Member.createMember("bulkTx1", 8000, team),
+                Member.createMember("bulkTx2", 8005, team)));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        //when, 롤백되면 다시 계산하지 않고 집계도 그대로다.
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.bulkAgePlus(8000);
+            assertThat(teamRepository.findAgeStats(team.getId()).getMinAge()).isEqualTo(8000);    //커밋 전에는 이전 집계
+            status.setRollbackOnly();
+        });
+        assertConsistent(team.getId());
+
+        //when, 커밋되면 다시 계산
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(8000));
+
+        //then
+        assertConsistent(team.getId());
+        assertThat(teamRepository.findAgeStats(team.getId()).getMinAge()).isEqualTo(8001);
+    }
+
+    @Test
+    void reconcileRepairsDrift() {
+        //given
+        Team team = teamRepository.save(new Team("statsDrift"));
+        memberRepository.save(Member.createMember("drift", 40, team));
+        jdbcTemplate.update("update team_age_count set member_count = 99 where team_id = ?", team.getId());
+
+        //when
+        reconciler.reconcile();
+
+        //then
+        assertConsistent(team.getId());
+        assertThat(teamRepository.findAgeStats(team.getId()).getMemberCount()).isEqualTo(1);
+    }
+
+    private void assertConsistent(Long... teamIds) {
+        String in = Arrays.stream(teamIds).map(String::valueOf).collect(Collectors.joining(", "));
+        List<String> expected = jdbcTemplate.queryForList("select team_id, age, count(*) as member_count from member"
+                + " where team_id in (" + in + ") group by team_id, age order by team_id, age").stream()
+                .map(TeamAgeStatsTest::row)
+                .collect(Collectors.toList());
+        List<String> materialized = teamRepository.findAgeCountsByTeamIdIn(List.of(teamIds)).stream()
+                .map(c -> c.getTeamId() + ":" + c.getAge() + ":" + c.getMemberCount())
+                .collect(Collectors.toList());
+        assertThat(materialized).isEqualTo(expected);
+    }
+
+    private static String row(Map<String, Object> row) {
+        return row.get("TEAM_ID") + ":" + row.get("AGE") + ":" + row.get("MEMBER_COUNT");
+    }
+}
@@ -0,0 +1,150 @@
+package study.datajpa.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.domain.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+//인덱스는 커밋 후 이벤트로 반영되므로 테스트 메소드를 트랜잭션으로 묶지 않는다.
+//벌크 연산 반영을 바로 확인하도록 safety-lag 를 0 으로 두고, 스케줄 대신 refresh() 를 직접 호출한다.
+@SpringBootTest(properties = {
+        "datajpa.sync.safety-lag=0s",
+        "datajpa.search.username-index.refresh-interval-millis=3600000"})
+class UsernameIndexTest {
+    @Autowired private UsernameIndex usernameIndex;
+    @Autowired private UsernameIndexLoader usernameIndexLoader;
+    @Autowired private MemberRepository memberRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    //다른 실행에서 남은 회원과 오타 거리 안에 들어오지 않도록 임의 문자열로 시작
+    private final String prefix = "s" + UUID.randomUUID().toString().substring(0, 8) + "-";
+
+    @BeforeEach
+    void awaitLoad() {
+        usernameIndexLoader.awaitReady();
+    }
+
+    @Test
+    void prefixAndTypoTolerantSearch() {
+        //given
+        Member alice = memberRepository.save(new Member(prefix + "Alice", 20));
+        Member alicia = memberRepository.save(new Member(prefix + "alicia", 30));
+        memberRepository.save(new Member(prefix + "bob", 40));
+
+        //when, then 접두어 검색은 대소문자 구분 없이 이름 순서
+        assertThat(usernameIndex.findByPrefix(prefix + "ALI", 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).containsExactly(alice.getId(), alicia.getId());
+        assertThat(usernameIndex.findByPrefix(prefix + "ali", 25, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getUsername).containsExactly(prefix + "alicia");
+        assertThat(usernameIndex.findByPrefix(prefix + "ali", 0, Integer.MAX_VALUE, 1)).hasSize(1);
+
+        //오타(두 글자 바꿈, 한 글자 빠짐)
+        List<UsernameMatch> similar = usernameIndex.findSimilar(prefix + "alcie", 2, 0, Integer.MAX_VALUE, 10);
+        assertThat(similar).first().satisfies(match -> {
+            assertThat(match.getId()).isEqualTo(alice.getId());
+            assertThat(match.getUsername()).isEqualTo(prefix + "Alice");
+            assertThat(match.getDistance()).isEqualTo(1);
+        });
+        assertThat(usernameIndex.findSimilar(prefix + "alica", 2, 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).contains(alice.getId(), alicia.getId());
+        assertThat(usernameIndex.findSimilar(prefix + "alica", 2, 35, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).doesNotContain(alice.getId(), alicia.getId());
+    }
+
+    //두 글자 바꿈은 3-gram 을 4개까지 바꾼다. 짧은 이름은 공유하는 3-gram 이 적어서 후보에서 빠지기 쉽다.
+    @Test
+    void transpositionInShortNames() {
+        //given
+        Member the = memberRepository.save(new Member("the", 50));
+        Member abcd = memberRepository.save(new Member("abcd", 51));
+
+        //when, then
+        assertThat(usernameIndex.findSimilar("teh", 2, 0, Integer.MAX_VALUE, 100))
+                .filteredOn(match -> match.getId().equals(the.getId()))
+                .extracting(UsernameMatch::getDistance).containsExactly(1);
+        assertThat(usernameIndex.findSimilar("acbd", 2, 0, Integer.MAX_VALUE, 100))
+                .filteredOn(match -> match.getId().equals(abcd.getId()))
+                .extracting(UsernameMatch::getDistance).containsExactly(1);
+    }
+
+    //같은 3-gram 을 공유하는 이름을 섞인 순서로 지워도 posting 안의 위치가 맞게 유지된다.
+    @Test
+    void removalKeepsSharedPostingsConsistent() {
+        //given
+        UsernameIndex index = new UsernameIndex();
+        for (long id = 0; id < 200; id++) {
+            index.put(id, "member" + id, 20);
+        }
+
+        //when, 짝수 id 를 뒤에서부터, 홀수 이름 일부는 다른 이름으로 바꿔서 지운다.
+        for (long id = 198; id >= 0; id -= 2) {
+            index.remove(id);
+        }
+        for (long id = 1; id < 200; id += 4) {
+            index.put(id, "renamed" + id, 20);
+        }
+
+        //then
+        assertThat(index.size()).isEqualTo(100);
+        assertThat(index.findByPrefix("member", 0, Integer.MAX_VALUE, 200)).hasSize(50)
+                .allSatisfy(match -> assertThat(match.getId() % 4).isEqualTo(3));
+        assertThat(index.findSimilar("membre103", 2, 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).first().isEqualTo(103L);
+        assertThat(index.findSimilar("membre102", 2, 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).doesNotContain(102L);
+        assertThat(index.findSimilar("renamde101", 2, 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).first().isEqualTo(101L);
+    }
+
+    @Test
+    void followsCommittedChanges() {
+        //given
+        Member member = memberRepository.save(new Member(prefix + "before", 10));
+
+        //when, 이름 변경
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                memberRepository.findById(member.getId()).orElseThrow().changeName(prefix + "after"));
+
+        //then
+        assertThat(usernameIndex.findByPrefix(prefix + "before", 0, Integer.MAX_VALUE, 10)).isEmpty();
+        assertThat(usernameIndex.findByPrefix(prefix + "after", 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).containsExactly(member.getId());
+
+        //롤백된 변경은 반영되지 않는다.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberRepository.findById(member.getId()).orElseThrow().changeName(prefix + "rolledBack");
+            memberRepository.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(usernameIndex.findByPrefix(prefix + "rolled", 0, Integer.MAX_VALUE, 10)).isEmpty();
+
+        //삭제
+        memberRepository.deleteById(member.getId());
+        assertThat(usernameIndex.findByPrefix(prefix, 0, Integer.MAX_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void refreshAppliesBulkUpdates() {
+        //given
+        Member member = memberRepository.save(new Member(prefix + "bulk", 5000));
+
+        //when, 벌크 연산은 엔티티 이벤트가 없어서 refresh 로 반영된다.
+        memberRepository.bulkAgePlus(5000);
+        assertThat(usernameIndex.findByPrefix(prefix, 0, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getAge).containsExactly(5000);
+        usernameIndexLoader.refresh();
+
+        //then
+        assertThat(usernameIndex.findByPrefix(prefix, 5001, Integer.MAX_VALUE, 10))
+                .extracting(UsernameMatch::getId).containsExactly(member.getId());
+    }
+}